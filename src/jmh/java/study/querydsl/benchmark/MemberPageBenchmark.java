@@ -0,0 +1,81 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 페이징 검색과 count 쿼리 비용.
+ * countWithTeamJoin 은 예전 searchPageComplex 의 count 모양(항상 left join + 엔티티 select),
+ * countMinimal 은 지금 모양(team 조건이 없으면 조인 없이 count(member.id))이다.
+ * searchSlice 는 count 없이 size + 1 건으로 다음 페이지 여부만 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberPageBenchmark {
+
+    private MemberRepository memberRepository;
+    private JPAQueryFactory queryFactory;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup
+    public void setUp(SeededContext seeded) {
+        memberRepository = seeded.bean(MemberRepository.class);
+        queryFactory = seeded.queryFactory();
+
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        pageRequest = PageRequest.of(2, 20);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Slice<MemberTeamDto> searchSlice() {
+        return memberRepository.searchSlice(condition, pageRequest);
+    }
+
+    @Benchmark
+    public long countWithTeamJoin() {
+        return queryFactory
+                .select(QMember.member)
+                .from(QMember.member)
+                .leftJoin(QMember.member.team, QTeam.team)
+                .where(QMember.member.age.goe(condition.getAgeGoe()))
+                .fetchCount();
+    }
+
+    @Benchmark
+    public Long countMinimal() {
+        return queryFactory
+                .select(QMember.member.id.count())
+                .from(QMember.member)
+                .where(QMember.member.age.goe(condition.getAgeGoe()))
+                .fetchOne();
+    }
+}
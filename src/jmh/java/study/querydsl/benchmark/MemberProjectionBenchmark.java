@@ -0,0 +1,72 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.QMember;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 결과를 만드는 DTO 프로젝션 4가지(setter, field, 생성자, @QueryProjection).
+ * 한 번에 1000건씩 읽어서 row 당 변환 비용이 드러나게 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberProjectionBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private JPAQueryFactory queryFactory;
+
+    @Setup
+    public void setUp(SeededContext seeded) {
+        queryFactory = seeded.queryFactory();
+    }
+
+    @Benchmark
+    public List<MemberDto> bean() {
+        return queryFactory
+                .select(Projections.bean(MemberDto.class, QMember.member.username, QMember.member.age))
+                .from(QMember.member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> fields() {
+        return queryFactory
+                .select(Projections.fields(MemberDto.class, QMember.member.username, QMember.member.age))
+                .from(QMember.member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> constructor() {
+        return queryFactory
+                .select(Projections.constructor(MemberDto.class, QMember.member.username, QMember.member.age))
+                .from(QMember.member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> queryProjection() {
+        return queryFactory
+                .select(new QMemberDto(QMember.member.username, QMember.member.age))
+                .from(QMember.member)
+                .limit(ROWS)
+                .fetch();
+    }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔티티 1000건 조회를 쓰기 트랜잭션(스냅샷 + 커밋 시 dirty checking) vs 읽기 전용 트랜잭션으로 비교.
+ * 할당량은 -prof gc 로 본다. (gc.alloc.rate.norm = 호출당 할당 바이트)
+ * ./gradlew jmh -PjmhArgs="MemberReadOnlyBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberReadOnlyBenchmark {
+
+    private JPAQueryFactory queryFactory;
+    private MemberJpaRepository memberJpaRepository;
+    private TransactionTemplate readWriteTx;
+    private TransactionTemplate readOnlyTx;
+
+    @Setup
+    public void setUp(SeededContext seeded) {
+        queryFactory = seeded.queryFactory();
+        memberJpaRepository = seeded.bean(MemberJpaRepository.class);
+
+        PlatformTransactionManager transactionManager = seeded.bean(PlatformTransactionManager.class);
+        readWriteTx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+    }
+
+    @Benchmark
+    public List<Member> readWrite() {
+        return readWriteTx.execute(status -> findTenPercent());
+    }
+
+    @Benchmark
+    public List<Member> readOnly() {
+        return readOnlyTx.execute(status -> findTenPercent());
+    }
+
+    // 리포지토리 기본 경로 (읽기 전용 트랜잭션 + HINT_READONLY), 결과는 전체라서 건수가 다르다
+    @Benchmark
+    public List<Member> repositoryFindAll() {
+        return memberJpaRepository.findAll_Querydsl();
+    }
+
+    private List<Member> findTenPercent() {
+        return queryFactory
+                .selectFrom(QMember.member)
+                .where(QMember.member.age.lt(10))
+                .fetch();
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberColumnIndex;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberJpaRepository 의 where 다중 파라미터 vs BooleanBuilder, JPQL vs Querydsl, 메모리 컬럼형 인덱스(searchColumnIndex).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchBenchmark {
+
+    private MemberJpaRepository memberJpaRepository;
+    private MemberColumnIndex columnIndex;
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp(SeededContext seeded) {
+        memberJpaRepository = seeded.bean(MemberJpaRepository.class);
+        columnIndex = seeded.bean(MemberColumnIndex.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchColumnIndex() {
+        return columnIndex.search(condition).orElseThrow();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<Member> findAll() {
+        return memberJpaRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Member> findAll_Querydsl() {
+        return memberJpaRepository.findAll_Querydsl();
+    }
+
+    @Benchmark
+    public List<Member> findByUsername() {
+        return memberJpaRepository.findByUsername("member7");
+    }
+
+    @Benchmark
+    public List<Member> findByUsername_Querydsl() {
+        return memberJpaRepository.findByUsername_Querydsl("member7");
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberImport;
+import study.querydsl.repository.MemberBulkLoader;
+import study.querydsl.repository.MemberColumnIndex;
+
+import java.util.stream.IntStream;
+
+/**
+ * 임베디드 H2(in-memory)에 members 건수만큼 회원을 채운 애플리케이션 컨텍스트.
+ * 건수는 -p members=1000,1000000 처럼 바꿔서 돌린다.
+ * 팀은 10개(team0 ~ team9), 나이는 0 ~ 99 로 고르게 나눠 넣는다.
+ */
+@State(Scope.Benchmark)
+public class SeededContext {
+
+    public static final int TEAMS = 10;
+
+    @Param({"10000"})
+    public int members;
+
+    public ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.p6spy=warn",
+                        "--decorator.datasource.p6spy.enable-logging=false",
+                        // 캐시된 count 가 아니라 실제 쿼리 비용을 잰다
+                        "--member.count-cache.ttl-millis=0",
+                        "--member.column-index.enabled=true");
+
+        context.getBean(MemberBulkLoader.class).load(IntStream.range(0, members)
+                .mapToObj(i -> new MemberImport("member" + i, i % 100, "team" + (i % TEAMS))));
+
+        // 적재 직후에는 메모리 인덱스가 다시 만들어지는 중이라 측정에 섞이지 않게 기다린다
+        MemberColumnIndex columnIndex = context.getBean(MemberColumnIndex.class);
+        while (!columnIndex.isFresh()) {
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JPAQueryFactory queryFactory() {
+        return context.getBean(JPAQueryFactory.class);
+    }
+}
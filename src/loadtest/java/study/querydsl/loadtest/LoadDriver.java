@@ -0,0 +1,158 @@
+package study.querydsl.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 스레드가 엔드포인트를 돌아가며 GET 하고, 엔드포인트별 처리량과 p50/p95/p99 응답 시간을 낸다.
+ * 스레드마다 기록을 따로 모았다가 끝나고 합치므로 측정 중에는 스레드 간 경합이 없다.
+ */
+public class LoadDriver {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final List<String> paths;
+    private final int threads;
+
+    public LoadDriver(String baseUrl, List<String> paths, int threads) {
+        this.baseUrl = baseUrl;
+        this.paths = paths;
+        this.threads = threads;
+    }
+
+    public List<Result> run(Duration warmup, Duration measure) throws InterruptedException {
+        drive(warmup);
+        return drive(measure);
+    }
+
+    private List<Result> drive(Duration duration) throws InterruptedException {
+        Recorder[][] recorders = new Recorder[threads][paths.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        for (int t = 0; t < threads; t++) {
+            Recorder[] mine = recorders[t];
+            for (int p = 0; p < paths.size(); p++) {
+                mine[p] = new Recorder();
+            }
+            int offset = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                    int p = i % paths.size();
+                    mine[p].record(call(paths.get(p)));
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(duration.toMillis() + 60_000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        List<Result> results = new ArrayList<>();
+        for (int p = 0; p < paths.size(); p++) {
+            Recorder merged = new Recorder();
+            for (Recorder[] perThread : recorders) {
+                merged.merge(perThread[p]);
+            }
+            results.add(merged.result(paths.get(p), seconds));
+        }
+        return results;
+    }
+
+    // 실패하면 음수로 돌려준다
+    private long call(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long elapsed = System.nanoTime() - start;
+            return response.statusCode() == 200 ? elapsed : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    public static class Result {
+        public final String path;
+        public final int requests;
+        public final int errors;
+        public final double throughput;
+        public final double p50Millis;
+        public final double p95Millis;
+        public final double p99Millis;
+
+        Result(String path, int requests, int errors, double throughput,
+               double p50Millis, double p95Millis, double p99Millis) {
+            this.path = path;
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+        }
+    }
+
+    private static class Recorder {
+        private long[] latencies = new long[1024];
+        private int size;
+        private int errors;
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                errors++;
+                return;
+            }
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        Result result(String path, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Result(path, size, errors, size / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
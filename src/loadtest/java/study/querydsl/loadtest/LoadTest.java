@@ -0,0 +1,143 @@
+package study.querydsl.loadtest;
+
+import org.h2.tools.Server;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import study.querydsl.QuerydslApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 프로필별로 애플리케이션을 띄워서 /v*\/members 에 부하를 주고 처리량과 꼬리 지연을 비교한다.
+ * DB 는 같은 JVM 에 띄운 H2 TCP 서버(in-memory)로, 운영 DB 처럼 네트워크 드라이버를 탄다.
+ * apis=servlet,reactive 면 같은 애플리케이션에서 /v*\/members/reactive 도 차례로 돌리고,
+ * tomcatThreads 로 Tomcat 스레드 수를 줄여서 스레드가 모자랄 때의 차이를 볼 수 있다.
+ *
+ * ./gradlew loadTest -PloadTestArgs="profiles=local,prod members=100000 threads=16 seconds=30"
+ * ./gradlew loadTest -PloadTestArgs="profiles=prod apis=servlet,reactive tomcatThreads=4 threads=64"
+ */
+public class LoadTest {
+
+    private static final Map<String, List<String>> PATHS = Map.of(
+            "servlet", List.of(
+                    "/v1/members?teamName=team3&ageGoe=20&ageLoe=40",
+                    "/v2/members?teamName=team3&page=0&size=20",
+                    "/v3/members?ageGoe=20&ageLoe=40&page=3&size=20",
+                    "/v4/members?sort=age&size=20"),
+            "reactive", List.of(
+                    "/v1/members/reactive?teamName=team3&ageGoe=20&ageLoe=40",
+                    "/v2/members/reactive?teamName=team3&page=0&size=20",
+                    "/v3/members/reactive?ageGoe=20&ageLoe=40&page=3&size=20"));
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        List<String> profiles = Arrays.asList(options.getOrDefault("profiles", "local,prod").split(","));
+        int members = Integer.parseInt(options.getOrDefault("members", "10000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration measure = Duration.ofSeconds(Long.parseLong(options.getOrDefault("seconds", "30")));
+        int dbPort = Integer.parseInt(options.getOrDefault("dbPort", "9093"));
+        List<String> apis = Arrays.asList(options.getOrDefault("apis", "servlet").split(","));
+        String tomcatThreads = options.get("tomcatThreads");
+
+        StringBuilder report = new StringBuilder();
+        Server h2 = Server.createTcpServer("-tcpPort", String.valueOf(dbPort), "-tcpAllowOthers", "-ifNotExists").start();
+        try {
+            for (String profile : profiles) {
+                Map<String, List<LoadDriver.Result>> results = runProfile(profile, dbPort, members, threads,
+                        apis, tomcatThreads, warmup, measure);
+                results.forEach((api, apiResults) ->
+                        report.append(format(profile, api, members, threads, tomcatThreads, apiResults)));
+            }
+        } finally {
+            h2.stop();
+        }
+        System.out.println(report);
+    }
+
+    private static Map<String, List<LoadDriver.Result>> runProfile(String profile, int dbPort, int members, int threads,
+                                                                   List<String> apis, String tomcatThreads,
+                                                                   Duration warmup, Duration measure) throws Exception {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=" + profile,
+                "--spring.datasource.url=jdbc:h2:tcp://localhost:" + dbPort + "/mem:loadtest_" + profile
+                        + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--member.import.enabled=true",
+                "--server.port=0"));
+        if (tomcatThreads != null) {
+            args.add("--server.tomcat.max-threads=" + tomcatThreads);
+        }
+
+        // 프로필마다 DB 를 새로 만들어서 앞 프로필의 데이터/캐시가 섞이지 않게 한다
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(QuerydslApplication.class).run(args.toArray(new String[0]));
+        try {
+            String baseUrl = "http://localhost:" + context.getWebServer().getPort();
+            seed(baseUrl, members);
+            Map<String, List<LoadDriver.Result>> results = new LinkedHashMap<>();
+            for (String api : apis) {
+                List<String> paths = PATHS.get(api);
+                if (paths == null) {
+                    throw new IllegalArgumentException("Unknown api: " + api + " (expected one of " + PATHS.keySet() + ")");
+                }
+                results.put(api, new LoadDriver(baseUrl, paths, threads).run(warmup, measure));
+            }
+            return results;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void seed(String baseUrl, int members) throws Exception {
+        String csv = "username,age,teamName\n" + IntStream.range(0, members)
+                .mapToObj(i -> "member" + i + "," + (i % 100) + ",team" + (i % 10))
+                .collect(Collectors.joining("\n"));
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/members/import"))
+                        .header("Content-Type", "text/csv")
+                        .POST(HttpRequest.BodyPublishers.ofString(csv))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static String format(String profile, String api, int members, int threads, String tomcatThreads,
+                                 List<LoadDriver.Result> results) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%n== profile=%s api=%s members=%d threads=%d tomcatThreads=%s%n",
+                profile, api, members, threads, tomcatThreads != null ? tomcatThreads : "default"));
+        out.append(String.format("%-50s %9s %7s %10s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+        for (LoadDriver.Result r : results) {
+            out.append(String.format("%-50s %9d %7d %10.1f %9.2f %9.2f %9.2f%n",
+                    r.path, r.requests, r.errors, r.throughput, r.p50Millis, r.p95Millis, r.p99Millis));
+        }
+        return out.toString();
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+}
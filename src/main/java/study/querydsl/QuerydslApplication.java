@@ -4,6 +4,8 @@ import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import study.querydsl.metrics.InstrumentedJPAQueryFactory;
+import study.querydsl.metrics.QueryMetrics;
 
 import javax.persistence.EntityManager;
 
@@ -15,8 +17,8 @@ public class QuerydslApplication {
     }
 
     @Bean
-    public JPAQueryFactory queryFactory(EntityManager em) {
-        return new JPAQueryFactory(em);
+    public JPAQueryFactory queryFactory(EntityManager em, QueryMetrics queryMetrics) {
+        return new InstrumentedJPAQueryFactory(em, queryMetrics);
     }
 
 
@@ -3,13 +3,11 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
+import study.querydsl.dto.MemberImport;
+import study.querydsl.repository.MemberBulkLoader;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
+import java.util.stream.IntStream;
 
 @Profile("local")
 @Component
@@ -24,21 +22,13 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService {
-        @PersistenceContext
-        EntityManager em;
+        private final MemberBulkLoader memberBulkLoader;
 
-        @Transactional
         public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for(int i = 0; i < 127; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member"+i, i, selectedTeam));
-            }
+            memberBulkLoader.load(IntStream.range(0, 127)
+                    .mapToObj(i -> new MemberImport("member" + i, i, i % 2 == 0 ? "teamA" : "teamB")));
         }
     }
 }
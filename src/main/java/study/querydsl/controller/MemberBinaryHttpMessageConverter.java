@@ -0,0 +1,132 @@
+package study.querydsl.controller;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * List/Page/Slice&lt;MemberTeamDto&gt; 를 고정 스키마 바이너리로 쓴다. (Accept: application/x-member-rows)
+ * 리플렉션 없이 필드를 순서대로 DataOutputStream 에 쓰므로 JSON 보다 작고 CPU 도 적게 든다.
+ *
+ * <pre>
+ * byte    version (1)
+ * byte    kind    0=list 1=page 2=slice
+ * page  : int number, int size, long totalElements
+ * slice : int number, int size, boolean hasNext
+ * int     rowCount
+ * row   : long memberId, string username, int age, long teamId(-1=없음), string teamName
+ * string: int byteLength(-1=null) + UTF-8
+ * </pre>
+ */
+public class MemberBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-member-rows";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final byte VERSION = 1;
+    static final byte KIND_LIST = 0;
+    static final byte KIND_PAGE = 1;
+    static final byte KIND_SLICE = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public MemberBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> raw = resolved.resolve(clazz);
+        if (raw == null || !(List.class.isAssignableFrom(raw) || Slice.class.isAssignableFrom(raw))) {
+            return false;
+        }
+        Class<?> element = resolved.as(List.class.isAssignableFrom(raw) ? List.class : Slice.class)
+                .getGeneric(0).resolve();
+        // 요소 타입을 모르면(raw List 등) 다른 DTO 일 수 있으니 쓰지 않는다
+        return element != null && MemberTeamDto.class.isAssignableFrom(element);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz) || Slice.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody(), BUFFER_SIZE));
+        out.writeByte(VERSION);
+
+        List<?> rows;
+        if (body instanceof Page) {
+            Page<?> page = (Page<?>) body;
+            out.writeByte(KIND_PAGE);
+            out.writeInt(page.getNumber());
+            out.writeInt(page.getSize());
+            out.writeLong(page.getTotalElements());
+            rows = page.getContent();
+        } else if (body instanceof Slice) {
+            Slice<?> slice = (Slice<?>) body;
+            out.writeByte(KIND_SLICE);
+            out.writeInt(slice.getNumber());
+            out.writeInt(slice.getSize());
+            out.writeBoolean(slice.hasNext());
+            rows = slice.getContent();
+        } else {
+            out.writeByte(KIND_LIST);
+            rows = (List<?>) body;
+        }
+
+        out.writeInt(rows.size());
+        for (Object row : rows) {
+            MemberTeamDto dto = (MemberTeamDto) row;
+            out.writeLong(dto.getMemberId());
+            writeString(out, dto.getUsername());
+            out.writeInt(dto.getAge());
+            out.writeLong(dto.getTeamId() != null ? dto.getTeamId() : -1L);
+            writeString(out, dto.getTeamName());
+        }
+        out.flush();
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading " + MEDIA_TYPE_VALUE + " is not supported", inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading " + MEDIA_TYPE_VALUE + " is not supported", inputMessage);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
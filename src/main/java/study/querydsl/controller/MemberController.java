@@ -1,26 +1,97 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberStatsDto;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.InvalidMemberRequestException;
+import study.querydsl.repository.MemberColumnIndex;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberPartitionedScanner;
+import study.querydsl.repository.MemberReactiveSearch;
+import study.querydsl.repository.MemberSearchCoalescer;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberStatsRepository;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberColumnIndex memberColumnIndex;
+    private final MemberStatsRepository memberStatsRepository;
+    private final MemberPartitionedScanner memberPartitionedScanner;
+    private final MemberReactiveSearch memberReactiveSearch;
+    private final MemberSearchCoalescer memberSearchCoalescer;
+    private final ObjectMapper objectMapper;
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+        // 메모리 인덱스가 최신이 아니면(또는 꺼져 있으면) DB 로 간다
+        return memberColumnIndex.search(condition)
+                .orElseGet(() -> memberJpaRepository.search(condition));
+    }
+
+    /**
+     * /v1/members 와 같은 조건으로 전체 결과를 NDJSON(한 줄에 한 건)으로 흘려보낸다.
+     * parallel=true 면 id 범위를 나눠 병렬로 읽는다(행 순서는 보장하지 않는다).
+     */
+    @GetMapping(value = "/v1/members/export", produces = NDJSON)
+    public void exportMemberV1(MemberSearchCondition condition,
+                               @RequestParam(defaultValue = "false") boolean parallel,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            long[] written = {0};
+            Consumer<MemberTeamDto> writer = dto -> {
+                try {
+                    generator.writeObject(dto);
+                    generator.writeRaw('\n');
+                    // 첫 줄은 바로 내보내고 이후에는 일정 건수마다 flush
+                    if (written[0]++ % EXPORT_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            if (parallel) {
+                memberPartitionedScanner.scan(condition, writer);
+            } else {
+                memberJpaRepository.searchStream(condition, writer);
+            }
+        }
     }
 
     @GetMapping("/v2/members")
@@ -29,7 +100,68 @@ public class MemberController {
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean estimated) {
+        if (estimated) {
+            return memberRepository.searchPageEstimated(condition, pageable);
+        }
+        // 같은 검색이 동시에 몰리면 한 번만 실행한다
+        return memberSearchCoalescer.searchPageComplex(condition, pageable);
+    }
+
+    @GetMapping("/v3/members/async")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchPageAsync(condition, pageable);
+    }
+
+    /**
+     * 요청 스레드를 잡고 있지 않는 /v1 ~ /v3. 쿼리는 member-reactive 스케줄러에서 돈다.
+     * Accept: application/stream+json 이면 읽는 대로 한 줄씩 내려보내고, 아니면 JSON 배열로 모아서 내려보낸다.
+     */
+    @GetMapping(value = "/v1/members/reactive",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE})
+    public Flux<MemberTeamDto> searchMemberV1Reactive(MemberSearchCondition condition) {
+        return memberReactiveSearch.search(condition);
+    }
+
+    @GetMapping("/v2/members/reactive")
+    public Mono<Page<MemberTeamDto>> searchMemberV2Reactive(MemberSearchCondition condition, Pageable pageable) {
+        return memberReactiveSearch.searchPageSimple(condition, pageable);
+    }
+
+    @GetMapping("/v3/members/reactive")
+    public Mono<Page<MemberTeamDto>> searchMemberV3Reactive(MemberSearchCondition condition, Pageable pageable) {
+        return memberReactiveSearch.searchPageComplex(condition, pageable);
+    }
+
+    @GetMapping("/v5/members")
+    public Slice<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchSlice(condition, pageable);
+    }
+
+    @GetMapping("/members/stats")
+    public MemberStatsDto memberStats(MemberSearchCondition condition,
+                                      @RequestParam(defaultValue = "10") int bucketSize) {
+        return memberStatsRepository.stats(condition, bucketSize);
+    }
+
+    @GetMapping("/v4/members")
+    public MemberCursorPage searchMemberV4(MemberSearchCondition condition,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "id") String sort,
+                                           @RequestParam(defaultValue = "20") int size) {
+        return memberRepository.searchByCursor(condition, cursor, sort, size);
+    }
+
+    // 잘못된 커서/정렬/페이지 크기. 다른 IllegalArgumentException 은 메시지에 쿼리가 들어갈 수 있으니 여기서 다루지 않는다
+    @ExceptionHandler(InvalidMemberRequestException.class)
+    public ResponseEntity<String> badRequest(InvalidMemberRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    // member-reactive 스케줄러의 대기열까지 찼을 때
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> serviceUnavailable(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
     }
 }
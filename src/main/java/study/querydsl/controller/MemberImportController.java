@@ -0,0 +1,54 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.repository.InvalidMemberRequestException;
+import study.querydsl.repository.MemberBulkLoader;
+import study.querydsl.repository.MemberImportReader;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 회원 대량 적재 (POST /members/import). 인증 없이 insert 를 받으니 member.import.enabled=true 일 때만 뜬다.
+ * 형식은 Content-Type 으로 고른다: text/csv 또는 application/x-ndjson
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "member.import.enabled", havingValue = "true")
+public class MemberImportController {
+
+    private static final String CSV = "text/csv";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final MemberBulkLoader memberBulkLoader;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(value = "/members/import", consumes = CSV)
+    public long importCsv(HttpServletRequest request) throws IOException {
+        return memberBulkLoader.load(MemberImportReader.csv(reader(request)));
+    }
+
+    @PostMapping(value = "/members/import", consumes = NDJSON)
+    public long importNdjson(HttpServletRequest request) throws IOException {
+        return memberBulkLoader.load(MemberImportReader.ndjson(reader(request), objectMapper));
+    }
+
+    // 잘못된 줄(MemberImportReader)
+    @ExceptionHandler(InvalidMemberRequestException.class)
+    public ResponseEntity<String> badRequest(InvalidMemberRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static Reader reader(HttpServletRequest request) throws IOException {
+        return new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+    }
+}
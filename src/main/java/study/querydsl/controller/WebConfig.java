@@ -0,0 +1,17 @@
+package study.querydsl.controller;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // 맨 뒤에 붙여서 Accept 가 없거나 */* 면 지금처럼 JSON 이 나간다
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MemberBinaryHttpMessageConverter());
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AgeBucketStatsDto {
+    //ageFrom 이상 ageTo 미만, 나이가 없는 회원은 둘 다 null 인 구간으로 모인다
+    private Integer ageFrom;
+    private Integer ageTo;
+    private long count;
+    private Double ageAvg;
+}
@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MemberCursorPage {
+    private List<MemberTeamDto> content;
+    private String nextCursor;
+    private boolean hasNext;
+
+    public MemberCursorPage(List<MemberTeamDto> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = nextCursor != null;
+    }
+}
@@ -0,0 +1,13 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class MemberStatsDto {
+    private List<TeamStatsDto> teams;
+    private List<AgeBucketStatsDto> ageBuckets;
+}
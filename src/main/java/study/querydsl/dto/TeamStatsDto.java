@@ -0,0 +1,17 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TeamStatsDto {
+    private Long teamId;
+    private String teamName;
+    private long count;
+    //집계할 나이가 없으면 null
+    private Long ageSum;
+    private Double ageAvg;
+    private Integer ageMin;
+    private Integer ageMax;
+}
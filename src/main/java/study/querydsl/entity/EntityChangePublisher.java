@@ -0,0 +1,49 @@
+package study.querydsl.entity;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.function.Supplier;
+
+/**
+ * Member/Team 이 insert/update/delete 될 때 스프링 이벤트를 발행한다.
+ * 하이버네이트가 SpringBeanContainer 로 생성하므로 생성자 주입이 된다.
+ * 벌크 연산(update/delete 쿼리)은 엔티티 콜백을 타지 않으니 호출하는 쪽에서 직접 발행해야 한다.
+ */
+@RequiredArgsConstructor
+public class EntityChangePublisher {
+
+    private static final ThreadLocal<Boolean> memberEventsSuppressed = ThreadLocal.withInitial(() -> false);
+
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * work 안에서 flush 되는 Member 변경은 행마다 이벤트를 내지 않는다 (Team 은 그대로 낸다).
+     * 대량 적재처럼 행마다 캐시를 비울 필요가 없을 때 쓰고, 끝난 뒤 호출하는 쪽이 id 없는 MemberChangedEvent 를 한 번 발행한다.
+     */
+    public static <T> T withoutMemberEvents(Supplier<T> work) {
+        boolean previous = memberEventsSuppressed.get();
+        memberEventsSuppressed.set(true);
+        try {
+            return work.get();
+        } finally {
+            memberEventsSuppressed.set(previous);
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        if (entity instanceof Member) {
+            if (!memberEventsSuppressed.get()) {
+                publisher.publishEvent(new MemberChangedEvent(((Member) entity).getId()));
+            }
+        } else if (entity instanceof Team) {
+            publisher.publishEvent(new TeamChangedEvent(((Team) entity).getId()));
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        // team_id FK 조인 + 팀/나이 복합 조건을 같이 커버한다
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
+@EntityListeners(EntityChangePublisher.class)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id","username","age"})
 public class Member {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
 
@@ -39,6 +51,10 @@ public class Member {
     }
 
     public void changeTeam(Team team) {
+        // 이전 팀 컬렉션에서도 빼야 Team.members 캐시가 어긋나지 않는다
+        if (this.team != null) {
+            this.team.getMembers().remove(this);
+        }
         this.team = team;
         team.getMembers().add(this);
     }
@@ -0,0 +1,12 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberChangedEvent {
+    private final Long memberId;
+}
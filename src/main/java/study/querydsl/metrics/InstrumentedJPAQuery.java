@@ -0,0 +1,132 @@
+package study.querydsl.metrics;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.NonUniqueResultException;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * fetch 계열 메서드의 실행 시간과 결과 row 수를 QueryMetrics 에 남기는 JPAQuery.
+ * JPQL 과 바인딩 파라미터는 logQuery 훅에서 받아 둔다.
+ */
+public class InstrumentedJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryMetrics metrics;
+    private String jpql;
+    private Map<Object, String> parameters;
+
+    public InstrumentedJPAQuery(EntityManager em, QueryMetrics metrics) {
+        super(em);
+        this.metrics = metrics;
+    }
+
+    public InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryMetrics metrics) {
+        super(em, templates, metadata);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<T> fetch() {
+        long start = System.nanoTime();
+        List<T> results = super.fetch();
+        record("fetch", start, results.size());
+        return results;
+    }
+
+    @Override
+    public T fetchOne() throws NonUniqueResultException {
+        long start = System.nanoTime();
+        T result = super.fetchOne();
+        record("fetchOne", start, result == null ? 0 : 1);
+        return result;
+    }
+
+    @Override
+    public long fetchCount() {
+        long start = System.nanoTime();
+        long count = super.fetchCount();
+        record("count", start, 1);
+        return count;
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        long start = System.nanoTime();
+        QueryResults<T> results = super.fetchResults();
+        record("fetchResults", start, results.getResults().size());
+        return results;
+    }
+
+    @Override
+    public CloseableIterator<T> iterate() {
+        long start = System.nanoTime();
+        CloseableIterator<T> iterator = super.iterate();
+        return new CloseableIterator<T>() {
+            private long rows;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                rows++;
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+
+            @Override
+            public void close() {
+                iterator.close();
+                record("iterate", start, rows);
+            }
+        };
+    }
+
+    @Override
+    public InstrumentedJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        InstrumentedJPAQuery<T> q = new InstrumentedJPAQuery<>(entityManager, templates, getMetadata().clone(), metrics);
+        q.clone(this);
+        return q;
+    }
+
+    @Override
+    public InstrumentedJPAQuery<T> clone(EntityManager entityManager) {
+        return clone(entityManager, getTemplates());
+    }
+
+    @Override
+    protected void logQuery(String queryString, Map<Object, String> parameters) {
+        this.jpql = queryString;
+        this.parameters = parameters;
+        super.logQuery(queryString, parameters);
+    }
+
+    private void record(String kind, long start, long rows) {
+        metrics.record(kind, PredicateShape.of(getMetadata().getWhere(), rootVariable()),
+                System.nanoTime() - start, rows, jpql, parameters);
+    }
+
+    private String rootVariable() {
+        QueryMetadata metadata = getMetadata();
+        if (metadata.getJoins().isEmpty()) {
+            return null;
+        }
+        Expression<?> target = metadata.getJoins().get(0).getTarget();
+        return target instanceof EntityPath ? ((Path<?>) target).getMetadata().getName() : null;
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.metrics;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import javax.persistence.EntityManager;
+
+/**
+ * select/selectFrom/from 이 모두 query() 를 거치므로 여기서 InstrumentedJPAQuery 를 내준다.
+ * update/delete 절은 계측하지 않는다.
+ */
+public class InstrumentedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final QueryMetrics metrics;
+
+    public InstrumentedJPAQueryFactory(EntityManager em, QueryMetrics metrics) {
+        super(em);
+        this.em = em;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new InstrumentedJPAQuery<Void>(em, metrics);
+    }
+}
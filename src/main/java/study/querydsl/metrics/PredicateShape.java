@@ -0,0 +1,84 @@
+package study.querydsl.metrics;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * where 절에 어떤 필터가 걸렸는지를 "ageGoe,teamName,username" 같은 문자열로 요약한다.
+ * from 절 엔티티(member)의 프로퍼티는 이름 그대로, 조인된 엔티티는 "team" + "Name" 처럼 붙이고,
+ * 범위 연산자는 MemberSearchCondition 처럼 Goe/Loe/Gt/Lt 를 붙인다.
+ * "team.id in (select ... where team.name = ?)" 같은 서브쿼리 조건은 서브쿼리 안의 필터(teamName)로 센다.
+ */
+public final class PredicateShape {
+
+    public static final String NONE = "none";
+
+    private static final Map<Operator, String> SUFFIXES = Map.of(
+            Ops.GOE, "Goe",
+            Ops.LOE, "Loe",
+            Ops.GT, "Gt",
+            Ops.LT, "Lt",
+            Ops.IN, "In",
+            Ops.IS_NULL, "IsNull",
+            Ops.IS_NOT_NULL, "IsNotNull");
+
+    private PredicateShape() {
+    }
+
+    public static String of(Predicate where, String rootVariable) {
+        if (where == null) {
+            return NONE;
+        }
+        Set<String> filters = new TreeSet<>();
+        collect(where, rootVariable, filters);
+        return filters.isEmpty() ? NONE : String.join(",", filters);
+    }
+
+    private static void collect(Expression<?> expression, String rootVariable, Set<String> filters) {
+        if (!(expression instanceof Operation)) {
+            return;
+        }
+
+        Operation<?> operation = (Operation<?>) expression;
+        Operator operator = operation.getOperator();
+        if (operator == Ops.AND || operator == Ops.OR || operator == Ops.NOT) {
+            for (Expression<?> arg : operation.getArgs()) {
+                collect(arg, rootVariable, filters);
+            }
+            return;
+        }
+
+        if (operator == Ops.IN && operation.getArg(1) instanceof SubQueryExpression) {
+            collect(((SubQueryExpression<?>) operation.getArg(1)).getMetadata().getWhere(), rootVariable, filters);
+            return;
+        }
+
+        Expression<?> first = operation.getArgs().isEmpty() ? null : operation.getArg(0);
+        if (first instanceof Path) {
+            filters.add(name((Path<?>) first, rootVariable) + SUFFIXES.getOrDefault(operator, ""));
+        }
+    }
+
+    private static String name(Path<?> path, String rootVariable) {
+        Path<?> parent = path.getMetadata().getParent();
+        if (parent == null) {
+            return path.getMetadata().getName();
+        }
+
+        String property = path.getMetadata().getName();
+        String owner = parent.getMetadata().getParent() == null
+                ? parent.getMetadata().getName()
+                : name(parent, rootVariable);
+        return owner.equals(rootVariable) ? property : owner + StringUtils.capitalize(property);
+    }
+}
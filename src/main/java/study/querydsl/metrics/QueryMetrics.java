@@ -0,0 +1,165 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 리포지토리 쿼리 한 건의 소요 시간, row 수, row/ms 를 기록한다.
+ * 태그: method(호출한 리포지토리 메서드), filters(걸린 where 조건), kind(fetch/count/...)
+ * 조회는 /actuator/metrics/querydsl.query?tag=method:MemberRepositoryCustomImpl.search 처럼 한다.
+ *
+ * 미터는 (method, filters, kind) 마다 한 번만 만들어 두고, 메서드 이름도 호출 위치(클래스, 메서드)마다 한 번만 만든다.
+ * 느린 쿼리 로그에는 바인딩 값(username 같은 개인정보)을 빼고 파라미터 이름만 남긴다.
+ * 값까지 봐야 하면 querydsl.metrics.log-parameter-values=true 로 켠다.
+ */
+@Slf4j
+@Component
+public class QueryMetrics {
+
+    private static final String REPOSITORY_PACKAGE = "study.querydsl.repository.";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    // 리포지토리 프레임을 찾을 때 내려가 볼 최대 깊이 (스택 전체를 훑지 않는다)
+    private static final int MAX_DEPTH = 64;
+    private static final ClassValue<Map<String, String>> METHOD_NAMES = new ClassValue<>() {
+        @Override
+        protected Map<String, String> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final MeterRegistry registry;
+    private final long slowQueryNanos;
+    private final boolean logParameterValues;
+    private final Map<List<String>, Meters> meters = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry,
+                        @Value("${querydsl.metrics.slow-query-millis:200}") long slowQueryMillis,
+                        @Value("${querydsl.metrics.log-parameter-values:false}") boolean logParameterValues) {
+        this.registry = registry;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.logParameterValues = logParameterValues;
+    }
+
+    /**
+     * @param parameters 바인딩 값 -> 파라미터 이름 (Querydsl 의 constantToLabel 과 같은 모양)
+     */
+    public void record(String kind, String filters, long nanos, long rows,
+                       String jpql, Map<Object, String> parameters) {
+        String method = callingRepositoryMethod();
+        Meters meters = this.meters.computeIfAbsent(Arrays.asList(method, filters, kind), this::register);
+
+        meters.time.record(nanos, TimeUnit.NANOSECONDS);
+        meters.rows.record(rows);
+        meters.rowsPerMs.record(rows / Math.max(nanos / 1_000_000d, 0.001));
+
+        if (nanos >= slowQueryNanos) {
+            meters.slow.increment();
+            log.warn("Slow query {} [{}] took {} ms, {} rows: {} params={}",
+                    method, filters, TimeUnit.NANOSECONDS.toMillis(nanos), rows, jpql, describe(parameters));
+        }
+    }
+
+    private Meters register(List<String> key) {
+        String[] tags = {"method", key.get(0), "filters", key.get(1), "kind", key.get(2)};
+        return new Meters(
+                Timer.builder("querydsl.query")
+                        .tags(tags)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry),
+                DistributionSummary.builder("querydsl.query.rows")
+                        .tags(tags)
+                        .register(registry),
+                DistributionSummary.builder("querydsl.query.rows.per.ms")
+                        .tags(tags)
+                        .register(registry),
+                Counter.builder("querydsl.query.slow")
+                        .tags(tags)
+                        .register(registry));
+    }
+
+    private String describe(Map<Object, String> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return "{}";
+        }
+        if (!logParameterValues) {
+            return parameters.values().stream()
+                    .sorted()
+                    .collect(Collectors.joining(", ", "{", "}"));
+        }
+        return parameters.entrySet().stream()
+                .map(e -> e.getValue() + "=" + e.getKey())
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    /**
+     * 쿼리를 실행한 리포지토리 메서드. 캐시 같은 보조 클래스를 거쳤으면 그 바깥의 *Repository* 를 찾고,
+     * 람다 안에서 실행됐으면 감싸고 있는 메서드 이름으로 바꾼다.
+     * *Repository* 프레임을 찾는 즉시 멈추고, 없으면 처음 만난 리포지토리 패키지 프레임을 쓴다.
+     */
+    private static String callingRepositoryMethod() {
+        StackWalker.StackFrame frame = STACK_WALKER.walk(s -> {
+            StackWalker.StackFrame first = null;
+            Iterator<StackWalker.StackFrame> frames = s.limit(MAX_DEPTH).iterator();
+            while (frames.hasNext()) {
+                StackWalker.StackFrame f = frames.next();
+                if (!f.getClassName().startsWith(REPOSITORY_PACKAGE)) {
+                    continue;
+                }
+                if (simpleName(f.getClassName()).contains("Repository")) {
+                    return f;
+                }
+                if (first == null) {
+                    first = f;
+                }
+            }
+            return first;
+        });
+        if (frame == null) {
+            return "unknown";
+        }
+        return METHOD_NAMES.get(frame.getDeclaringClass()).computeIfAbsent(frame.getMethodName(),
+                methodName -> simpleName(frame.getClassName()) + "." + methodName(methodName));
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return inner < 0 ? name : name.substring(0, inner);
+    }
+
+    private static String methodName(String methodName) {
+        if (methodName.startsWith("lambda$")) {
+            String enclosing = methodName.substring("lambda$".length());
+            int end = enclosing.indexOf('$');
+            return end < 0 ? enclosing : enclosing.substring(0, end);
+        }
+        return methodName;
+    }
+
+    private static class Meters {
+        private final Timer time;
+        private final DistributionSummary rows;
+        private final DistributionSummary rowsPerMs;
+        private final Counter slow;
+
+        private Meters(Timer time, DistributionSummary rows, DistributionSummary rowsPerMs, Counter slow) {
+            this.time = time;
+            this.rows = rows;
+            this.rowsPerMs = rowsPerMs;
+            this.slow = slow;
+        }
+    }
+}
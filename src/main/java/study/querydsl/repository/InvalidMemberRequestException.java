@@ -0,0 +1,16 @@
+package study.querydsl.repository;
+
+/**
+ * 클라이언트가 보낸 값(커서, 정렬, 페이지 크기, 적재할 줄 등)이 잘못됐을 때. 컨트롤러가 메시지와 함께 400 으로 돌려준다.
+ * IllegalArgumentException 을 쓰면 하이버네이트/스프링 내부 예외와 구분이 안 되고, @Repository 프록시가 스프링 예외로 감싼다.
+ */
+public class InvalidMemberRequestException extends RuntimeException {
+
+    public InvalidMemberRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidMemberRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberImport;
+import study.querydsl.entity.EntityChangePublisher;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 회원 대량 적재.
+ * member_seq 를 pooled 로 할당받고(allocationSize), hibernate.jdbc.batch_size 단위로 insert 를 묶어 보낸 뒤
+ * 같은 주기로 flush/clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+ * 행마다 MemberChangedEvent 를 내면 트랜잭션 동기화가 행 수만큼 쌓이므로 적재 중에는 막고 끝에 id 없는 이벤트를 한 번 낸다.
+ */
+@Repository
+public class MemberBulkLoader {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final ApplicationEventPublisher publisher;
+    private final int batchSize;
+
+    public MemberBulkLoader(EntityManager em, JPAQueryFactory queryFactory, ApplicationEventPublisher publisher,
+                            @Value("${member.bulk.batch-size:500}") int batchSize) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public long load(Stream<MemberImport> members) {
+        long count = EntityChangePublisher.withoutMemberEvents(() -> persistAll(members));
+        if (count > 0) {
+            publisher.publishEvent(new MemberChangedEvent(null));
+        }
+        return count;
+    }
+
+    private long persistAll(Stream<MemberImport> members) {
+        Map<String, Long> teamIds = new HashMap<>();
+        long count = 0;
+
+        try (members) {
+            Iterator<MemberImport> iterator = members.iterator();
+            while (iterator.hasNext()) {
+                MemberImport row = iterator.next();
+
+                Member member = new Member(row.getUsername(), row.getAge());
+                if (StringUtils.hasText(row.getTeamName())) {
+                    Long teamId = teamIds.computeIfAbsent(row.getTeamName(), this::findOrCreateTeam);
+                    // changeTeam 은 team.members 컬렉션을 초기화하므로 적재할 때는 FK 만 건다
+                    member.setTeam(em.getReference(Team.class, teamId));
+                }
+                em.persist(member);
+
+                if (++count % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        }
+
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    private Long findOrCreateTeam(String teamName) {
+        Long teamId = queryFactory
+                .select(QTeam.team.id)
+                .from(QTeam.team)
+                .where(QTeam.team.name.eq(teamName))
+                .fetchFirst();
+        if (teamId != null) {
+            return teamId;
+        }
+
+        Team team = new Team(teamName);
+        em.persist(team);
+        return team.getId();
+    }
+}
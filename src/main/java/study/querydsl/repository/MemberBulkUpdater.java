@@ -0,0 +1,185 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.QMember;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * MemberSearchCondition 으로 고른 회원에 대한 벌크 update/delete.
+ * 조건에 맞는 id 를 chunk-size 개씩 id 순으로 읽어서 그 id 들만 바꾸고, 쓰기 트랜잭션 밖에서 부르면 chunk 마다
+ * 새 트랜잭션(REQUIRES_NEW)으로 커밋하므로 한 번에 넓은 범위를 잠그지 않는다. id 가 듬성듬성해도 빈 chunk 는 생기지 않는다.
+ *
+ * 쓰기 트랜잭션 안에서 부르면 chunk 들이 그 트랜잭션에 참여한다. 바깥 트랜잭션을 잠시 멈추고 새로 열면
+ * 바깥이 이미 flush 해서 잡고 있는 행 잠금을 chunk 가 기다리며 스스로 멈출 수 있기 때문이다.
+ * 이때는 잠금이 바깥 트랜잭션이 끝날 때까지 유지되고, 커밋/롤백도 바깥을 따른다.
+ *
+ * chunk 가 끝날 때마다 부른 쪽 영속성 컨텍스트에서 그 id 의 회원을 detach 하므로 옛 값이 남지 않는다.
+ * 다시 읽으면 바뀐 값이 보인다.
+ *
+ * 벌크 쿼리는 엔티티 콜백을 타지 않으니 끝난 뒤 id 없는 MemberChangedEvent 를 한 번 직접 발행한다.
+ * 2차 캐시는 하이버네이트가 벌크 쿼리 때 비운다.
+ */
+@Slf4j
+@Repository
+public class MemberBulkUpdater {
+
+    private final JPAQueryFactory queryFactory;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate chunkTx;
+    private final TransactionTemplate joinedTx;
+    private final ApplicationEventPublisher publisher;
+    private final int chunkSize;
+
+    public MemberBulkUpdater(JPAQueryFactory queryFactory, EntityManagerFactory emf,
+                             PlatformTransactionManager transactionManager, ApplicationEventPublisher publisher,
+                             @Value("${member.bulk.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.queryFactory = queryFactory;
+        this.emf = emf;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joinedTx = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * chunk 하나를 커밋할 때마다 불린다. lastId 는 그 chunk 의 마지막 id, maxId 는 시작할 때 조건에 맞던 가장 큰 id.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onChunk(long affected, long totalAffected, long lastId, long maxId);
+    }
+
+    public long bulkAgeIncrement(MemberSearchCondition condition) {
+        return bulkAgeIncrement(condition, 1, null);
+    }
+
+    public long bulkAgeIncrement(MemberSearchCondition condition, int amount, ProgressListener listener) {
+        return inChunks("ageIncrement", condition, listener, ids -> queryFactory
+                .update(QMember.member)
+                .set(QMember.member.age, QMember.member.age.add(amount))
+                .where(QMember.member.id.in(ids))
+                .execute());
+    }
+
+    public long bulkDeleteByCondition(MemberSearchCondition condition) {
+        return bulkDeleteByCondition(condition, null);
+    }
+
+    public long bulkDeleteByCondition(MemberSearchCondition condition, ProgressListener listener) {
+        return inChunks("delete", condition, listener, ids -> queryFactory
+                .delete(QMember.member)
+                .where(QMember.member.id.in(ids))
+                .execute());
+    }
+
+    private long inChunks(String operation, MemberSearchCondition condition, ProgressListener listener,
+                          ChunkStatement statement) {
+        Predicate where = where(condition);
+        TransactionTemplate tx = inWriteTransaction() ? joinedTx : chunkTx;
+        Long maxId = tx.execute(status -> queryFactory
+                .select(QMember.member.id.max())
+                .from(QMember.member)
+                .where(where)
+                .fetchOne());
+        if (maxId == null) {
+            return 0;
+        }
+
+        long total = 0;
+        try {
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                // update 로 조건에서 빠지거나 새로 들어오는 행이 있어도 id 순으로 한 번씩만 처리한다
+                long after = lastId;
+                Chunk chunk = tx.execute(status -> {
+                    List<Long> ids = queryFactory
+                            .select(QMember.member.id)
+                            .from(QMember.member)
+                            .where(where, QMember.member.id.gt(after), QMember.member.id.loe(maxId))
+                            .orderBy(QMember.member.id.asc())
+                            .limit(chunkSize)
+                            .fetch();
+                    return new Chunk(ids, ids.isEmpty() ? 0 : statement.execute(ids));
+                });
+                if (chunk.ids.isEmpty()) {
+                    break;
+                }
+
+                detachFromCaller(chunk.ids);
+                total += chunk.affected;
+                lastId = chunk.ids.get(chunk.ids.size() - 1);
+                log.debug("Bulk {} processed ids {}..{} of {}: {} rows ({} total)",
+                        operation, chunk.ids.get(0), lastId, maxId, chunk.affected, total);
+                if (listener != null) {
+                    listener.onChunk(chunk.affected, total, lastId, maxId);
+                }
+                if (chunk.ids.size() < chunkSize) {
+                    break;
+                }
+            }
+        } finally {
+            // 중간에 실패해도 이미 커밋된 chunk 가 있으면 알린다. 커밋 후 리스너도 돌도록 트랜잭션 안에서 발행한다
+            if (total > 0) {
+                tx.executeWithoutResult(status -> publisher.publishEvent(new MemberChangedEvent(null)));
+            }
+        }
+        return total;
+    }
+
+    // 부른 쪽 영속성 컨텍스트(트랜잭션이나 open-in-view 로 묶인 것)에 있는 회원을 떼어낸다.
+    // getReference 는 이미 있으면 그 엔티티를, 없으면 초기화하지 않은 프록시를 주므로 DB 를 읽지 않는다
+    private void detachFromCaller(List<Long> ids) {
+        EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        if (em == null) {
+            return;
+        }
+        for (Long id : ids) {
+            em.detach(em.getReference(Member.class, id));
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // update/delete 쿼리에는 조인을 못 쓰니 팀 조건은 서브쿼리로 건다
+    private Predicate where(MemberSearchCondition condition) {
+        return MemberSearchQueries.where(condition, MemberSearchQueries::teamNameInSubquery);
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement {
+        long execute(List<Long> ids);
+    }
+
+    private static class Chunk {
+        private final List<Long> ids;
+        private final long affected;
+
+        private Chunk(List<Long> ids, long affected) {
+            this.ids = ids;
+            this.affected = affected;
+        }
+    }
+}
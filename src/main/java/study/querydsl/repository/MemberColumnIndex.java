@@ -0,0 +1,391 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.TeamChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * /v1/members 검색용 메모리 내 컬럼형 인덱스. (member.column-index.enabled=true 일 때만 채운다)
+ * id/나이/팀은 primitive 배열, username 과 팀 이름은 사전 인코딩(문자열 -> int 코드)해서 들고,
+ * 검색은 배열을 한 번 훑으면서 int 비교만 한다.
+ *
+ * 커밋된 Member/Team 변경 이벤트를 받아 바뀐 id 만 다시 읽어 반영한다(별도 스레드).
+ * 반영이 끝나기 전(stale)이나 아직 다 만들어지지 않았을 때는 Optional.empty() 를 돌려주니 호출하는 쪽은 DB 로 간다.
+ *
+ * 최신 여부는 이 이벤트만 보고 판단한다. 벌크 update/delete 쿼리나 다른 프로세스의 쓰기는 엔티티 콜백을 타지 않으니,
+ * MemberBulkUpdater/MemberBulkLoader 처럼 끝난 뒤 id 없는 MemberChangedEvent 를 내거나 rebuild() 를 부르지 않으면
+ * 인덱스는 stale 인데도 최신이라고 답한다. 그래서 DB 를 여러 프로세스가 쓰는 환경에서는 켜지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberColumnIndex {
+
+    private static final int LOAD_CHUNK = 10_000;
+    private static final int NO_TEAM = -1;
+
+    private final boolean enabled;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final ExecutorService refresher;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 아래 컬럼들은 lock 으로 보호한다
+    private int size;
+    private long[] ids = new long[0];
+    private int[] ages = new int[0];
+    private int[] teamCodes = new int[0];
+    private int[] usernameCodes = new int[0];
+    private final BitSet live = new BitSet();
+    private int deletedRows;
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private final Map<String, Integer> usernameDictionary = new HashMap<>();
+    private final List<String> usernames = new ArrayList<>();
+    private final Map<Long, Integer> teamCodeById = new HashMap<>();
+    private final List<Long> teamIds = new ArrayList<>();
+    private final List<String> teamNames = new ArrayList<>();
+    private boolean ready;
+
+    // 반영 대기 중인 변경, this 로 동기화
+    private final Set<Long> pendingMembers = new HashSet<>();
+    private final Set<Long> pendingTeams = new HashSet<>();
+    private boolean pendingRebuild;
+
+    public MemberColumnIndex(@Value("${member.column-index.enabled:false}") boolean enabled,
+                             JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-column-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 인덱스가 최신이면 결과를, 아니면 empty 를 돌려준다.
+     */
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        if (!isFresh()) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            return Optional.of(scan(condition));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isFresh() {
+        synchronized (this) {
+            if (!enabled || pendingRebuild || !pendingMembers.isEmpty() || !pendingTeams.isEmpty()) {
+                return false;
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 처음부터 다시 만든다. 기동 시 한 번 돌고, 벌크 연산(id 없는 이벤트) 뒤에도 돈다.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            pendingRebuild = true;
+        }
+        refresher.execute(this::refresh);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (event.getMemberId() == null) {
+                pendingRebuild = true;
+            } else {
+                pendingMembers.add(event.getMemberId());
+            }
+        }
+        refresher.execute(this::refresh);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTeamChanged(TeamChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            pendingTeams.add(event.getTeamId());
+        }
+        refresher.execute(this::refresh);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private List<MemberTeamDto> scan(MemberSearchCondition condition) {
+        int usernameCode = -1;
+        if (StringUtils.hasText(condition.getUsername())) {
+            Integer code = usernameDictionary.get(condition.getUsername());
+            if (code == null) {
+                return new ArrayList<>();
+            }
+            usernameCode = code;
+        }
+
+        boolean[] teamMatch = null;
+        if (StringUtils.hasText(condition.getTeamName())) {
+            teamMatch = new boolean[teamNames.size()];
+            boolean any = false;
+            for (int code = 0; code < teamMatch.length; code++) {
+                teamMatch[code] = condition.getTeamName().equals(teamNames.get(code));
+                any |= teamMatch[code];
+            }
+            if (!any) {
+                return new ArrayList<>();
+            }
+        }
+
+        int ageGoe = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+        int ageLoe = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+
+        // 지운 행이 없으면 비트셋을 따라가지 않고 배열을 그대로 훑는다
+        boolean checkLive = deletedRows > 0;
+        List<MemberTeamDto> result = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (checkLive && !live.get(row)) {
+                continue;
+            }
+            int age = ages[row];
+            if (age < ageGoe || age > ageLoe) {
+                continue;
+            }
+            if (usernameCode >= 0 && usernameCodes[row] != usernameCode) {
+                continue;
+            }
+            int teamCode = teamCodes[row];
+            if (teamMatch != null && (teamCode == NO_TEAM || !teamMatch[teamCode])) {
+                continue;
+            }
+            result.add(toDto(row));
+        }
+        return result;
+    }
+
+    private MemberTeamDto toDto(int row) {
+        int teamCode = teamCodes[row];
+        return new MemberTeamDto(ids[row], usernames.get(usernameCodes[row]), ages[row],
+                teamCode == NO_TEAM ? null : teamIds.get(teamCode),
+                teamCode == NO_TEAM ? null : teamNames.get(teamCode));
+    }
+
+    // refresher 스레드에서만 돈다
+    private void refresh() {
+        boolean rebuild;
+        Set<Long> members;
+        Set<Long> teams;
+        synchronized (this) {
+            rebuild = pendingRebuild;
+            members = new HashSet<>(pendingMembers);
+            teams = new HashSet<>(pendingTeams);
+        }
+        if (!rebuild && members.isEmpty() && teams.isEmpty()) {
+            return;
+        }
+
+        try {
+            // 대량 적재처럼 바뀐 id 가 많으면 IN 으로 나눠 읽는 것보다 다시 만드는 게 낫다
+            if (rebuild || members.size() > LOAD_CHUNK) {
+                loadAll();
+            } else {
+                apply(members, teams);
+            }
+            synchronized (this) {
+                // 읽기 시작한 뒤에 들어온 변경은 남겨 두고 다음 refresh 에서 반영한다
+                pendingRebuild &= !(rebuild || members.size() > LOAD_CHUNK);
+                pendingMembers.removeAll(members);
+                pendingTeams.removeAll(teams);
+            }
+        } catch (RuntimeException e) {
+            // 대기 목록을 그대로 두면 계속 stale 로 남아 DB 로 간다
+            log.warn("Member column index refresh failed, searches fall back to the database", e);
+        }
+    }
+
+    // 행 전체를 DTO 로 들고 있다가 채우면 힙을 두 배로 쓰니 LOAD_CHUNK 씩 읽는 대로 컬럼에 채운다.
+    // 다 채울 때까지 pendingRebuild 가 남아 있어서 검색은 만들다 만 인덱스를 보지 않고 DB 로 간다
+    private void loadAll() {
+        Long count = readOnlyTx.execute(status -> queryFactory
+                .select(QMember.member.count())
+                .from(QMember.member)
+                .fetchOne());
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            size = 0;
+            // 센 뒤에 늘어난 행은 upsert 가 배열을 늘려서 받는다
+            ids = new long[Math.max(count != null ? count.intValue() : 0, 16)];
+            ages = new int[ids.length];
+            teamCodes = new int[ids.length];
+            usernameCodes = new int[ids.length];
+            live.clear();
+            deletedRows = 0;
+            rowById.clear();
+            usernameDictionary.clear();
+            usernames.clear();
+            teamCodeById.clear();
+            teamIds.clear();
+            teamNames.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            long after = lastId;
+            List<MemberTeamDto> chunk = readOnlyTx.execute(status -> memberRows()
+                    .where(QMember.member.id.gt(after))
+                    .orderBy(QMember.member.id.asc())
+                    .limit(LOAD_CHUNK)
+                    .fetch());
+            lock.writeLock().lock();
+            try {
+                for (MemberTeamDto row : chunk) {
+                    upsert(row);
+                }
+                if (chunk.size() < LOAD_CHUNK) {
+                    ready = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (chunk.size() < LOAD_CHUNK) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getMemberId();
+        }
+        log.info("Member column index built: {} members, {} teams", size, teamIds.size());
+    }
+
+    private void apply(Set<Long> memberIds, Set<Long> changedTeamIds) {
+        List<MemberTeamDto> rows = memberIds.isEmpty() ? List.of() : readOnlyTx.execute(status -> memberRows()
+                .where(QMember.member.id.in(memberIds))
+                .fetch());
+        Map<Long, String> renamed = changedTeamIds.isEmpty() ? Map.of() : readOnlyTx.execute(status -> {
+            Map<Long, String> names = new HashMap<>();
+            queryFactory
+                    .select(QTeam.team.id, QTeam.team.name)
+                    .from(QTeam.team)
+                    .where(QTeam.team.id.in(changedTeamIds))
+                    .fetch()
+                    .forEach(tuple -> names.put(tuple.get(QTeam.team.id), tuple.get(QTeam.team.name)));
+            return names;
+        });
+
+        lock.writeLock().lock();
+        try {
+            Set<Long> deleted = new HashSet<>(memberIds);
+            for (MemberTeamDto row : rows) {
+                deleted.remove(row.getMemberId());
+                upsert(row);
+            }
+            for (Long id : deleted) {
+                Integer row = rowById.remove(id);
+                if (row != null) {
+                    live.clear(row);
+                    deletedRows++;
+                }
+            }
+            renamed.forEach((teamId, name) -> {
+                Integer code = teamCodeById.get(teamId);
+                if (code != null) {
+                    teamNames.set(code, name);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // write lock 안에서만 부른다
+    private void upsert(MemberTeamDto dto) {
+        Integer row = rowById.get(dto.getMemberId());
+        if (row == null) {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamCodes = Arrays.copyOf(teamCodes, capacity);
+                usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+            }
+            row = size++;
+            rowById.put(dto.getMemberId(), row);
+        }
+
+        ids[row] = dto.getMemberId();
+        ages[row] = dto.getAge();
+        usernameCodes[row] = usernameDictionary.computeIfAbsent(dto.getUsername(), name -> {
+            usernames.add(name);
+            return usernames.size() - 1;
+        });
+        teamCodes[row] = dto.getTeamId() == null ? NO_TEAM : teamCodeById.computeIfAbsent(dto.getTeamId(), teamId -> {
+            teamIds.add(teamId);
+            teamNames.add(dto.getTeamName());
+            return teamIds.size() - 1;
+        });
+        live.set(row);
+    }
+
+    private JPAQuery<MemberTeamDto> memberRows() {
+        return MemberSearchQueries.selectMemberTeam(queryFactory);
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.TeamChangedEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색 조건별 count 결과 캐시.
+ * TTL 이 지나거나 maxSize 를 넘기면(LRU) 버리고, Member/Team 이 변경되면 전부 무효화한다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final long ttlMillis;
+    private final Map<MemberSearchCondition, CachedCount> entries;
+    private long generation;
+
+    public MemberCountCache(@Value("${member.count-cache.ttl-millis:30000}") long ttlMillis,
+                            @Value("${member.count-cache.max-size:1000}") int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<MemberSearchCondition, CachedCount>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchCondition, CachedCount> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        MemberSearchCondition key = normalize(condition);
+        OptionalLong cached = peekNormalized(key);
+        if (cached.isPresent()) {
+            return cached.getAsLong();
+        }
+
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+
+        long count = countQuery.getAsLong();
+
+        synchronized (this) {
+            // count 를 세는 동안 쓰기가 있었다면 캐시하지 않는다
+            if (startGeneration == generation && ttlMillis > 0) {
+                entries.put(key, new CachedCount(count, System.currentTimeMillis() + ttlMillis));
+            }
+        }
+        return count;
+    }
+
+    public OptionalLong peek(MemberSearchCondition condition) {
+        return peekNormalized(normalize(condition));
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    @EventListener({MemberChangedEvent.class, TeamChangedEvent.class})
+    public void onChange() {
+        invalidateAll();
+    }
+
+    // 트랜잭션 안에서 계산된 count 는 커밋/롤백 이후에는 맞지 않을 수 있으니 한번 더 비운다
+    @TransactionalEventListener(classes = {MemberChangedEvent.class, TeamChangedEvent.class},
+            phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterCompletion() {
+        invalidateAll();
+    }
+
+    private synchronized OptionalLong peekNormalized(MemberSearchCondition key) {
+        CachedCount entry = entries.get(key);
+        if (entry == null) {
+            return OptionalLong.empty();
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(entry.count);
+    }
+
+    private MemberSearchCondition normalize(MemberSearchCondition condition) {
+        MemberSearchCondition key = new MemberSearchCondition();
+        key.setUsername(StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null);
+        key.setTeamName(StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null);
+        key.setAgeGoe(condition.getAgeGoe());
+        key.setAgeLoe(condition.getAgeLoe());
+        return key;
+    }
+
+    private static class CachedCount {
+        private final long count;
+        private final long expiresAt;
+
+        private CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
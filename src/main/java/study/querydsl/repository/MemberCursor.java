@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset 페이징의 위치(마지막으로 읽은 row 의 정렬 키 + member_id).
+ * 클라이언트에는 "sort:lastId[:value]" 를 Base64(URL-safe) 로 감싼 불투명 토큰으로만 노출한다.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class MemberCursor {
+
+    enum SortKey {
+        ID, AGE, USERNAME;
+
+        static SortKey of(String sort) {
+            if (sort == null || sort.isEmpty()) {
+                return ID;
+            }
+            try {
+                return valueOf(sort.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidMemberRequestException("Unsupported cursor sort: " + sort);
+            }
+        }
+    }
+
+    private final SortKey sortKey;
+    private final Long lastId;
+    private final Integer lastAge;
+    private final String lastUsername;
+
+    static MemberCursor after(SortKey sortKey, MemberTeamDto last) {
+        return new MemberCursor(sortKey, last.getMemberId(), last.getAge(), last.getUsername());
+    }
+
+    static MemberCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidMemberRequestException("Malformed cursor: " + token);
+        }
+
+        // username 에 ':' 가 들어갈 수 있으므로 값은 항상 마지막 토큰
+        String[] parts = raw.split(":", 3);
+        if (parts.length < 2) {
+            throw new InvalidMemberRequestException("Malformed cursor: " + token);
+        }
+
+        SortKey sortKey = SortKey.of(parts[0]);
+        try {
+            Long lastId = Long.valueOf(parts[1]);
+            switch (sortKey) {
+                case AGE:
+                    return new MemberCursor(sortKey, lastId, Integer.valueOf(parts[2]), null);
+                case USERNAME:
+                    // 값이 없으면 null username 구간에서 멈춘 것
+                    return new MemberCursor(sortKey, lastId, null, parts.length == 3 ? parts[2] : null);
+                default:
+                    return new MemberCursor(sortKey, lastId, null, null);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidMemberRequestException("Malformed cursor: " + token);
+        }
+    }
+
+    String encode() {
+        StringBuilder raw = new StringBuilder(sortKey.name()).append(':').append(lastId);
+        if (sortKey == SortKey.AGE) {
+            raw.append(':').append(lastAge);
+        } else if (sortKey == SortKey.USERNAME && lastUsername != null) {
+            raw.append(':').append(lastUsername);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
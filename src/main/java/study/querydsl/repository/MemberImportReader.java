@@ -0,0 +1,92 @@
+package study.querydsl.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberImport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+/**
+ * 대용량 입력을 한 줄씩 읽어 MemberImport 로 바꾸는 lazy 스트림.
+ * 반환된 스트림을 닫으면 reader 도 닫힌다.
+ */
+public final class MemberImportReader {
+
+    private MemberImportReader() {
+    }
+
+    /**
+     * "username,age,teamName" 형식. 첫 줄이 "username,age" 헤더면 그 줄만 건너뛴다.
+     * teamName 은 비어 있어도 된다.
+     */
+    public static Stream<MemberImport> csv(Reader reader) {
+        BufferedReader lines = buffered(reader);
+        String first;
+        try {
+            first = lines.readLine();
+        } catch (IOException e) {
+            close(lines);
+            throw new UncheckedIOException(e);
+        }
+        Stream<String> rows = first == null || isCsvHeader(first)
+                ? lines.lines()
+                : Stream.concat(Stream.of(first), lines.lines());
+        return rows
+                .filter(StringUtils::hasText)
+                .map(MemberImportReader::parseCsvLine)
+                .onClose(() -> close(lines));
+    }
+
+    /**
+     * 한 줄에 {"username":..., "age":..., "teamName":...} 하나.
+     */
+    public static Stream<MemberImport> ndjson(Reader reader, ObjectMapper objectMapper) {
+        BufferedReader lines = buffered(reader);
+        return lines.lines()
+                .filter(StringUtils::hasText)
+                .map(line -> {
+                    try {
+                        return objectMapper.readValue(line, MemberImport.class);
+                    } catch (IOException e) {
+                        throw new InvalidMemberRequestException("Malformed member line: " + line, e);
+                    }
+                })
+                .onClose(() -> close(lines));
+    }
+
+    private static boolean isCsvHeader(String line) {
+        String[] columns = line.split(",", -1);
+        return columns.length >= 2
+                && "username".equalsIgnoreCase(columns[0].trim())
+                && "age".equalsIgnoreCase(columns[1].trim());
+    }
+
+    private static MemberImport parseCsvLine(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length < 2) {
+            throw new InvalidMemberRequestException("Malformed member line: " + line);
+        }
+        try {
+            String teamName = columns.length > 2 && StringUtils.hasText(columns[2]) ? columns[2].trim() : null;
+            return new MemberImport(columns[0].trim(), Integer.parseInt(columns[1].trim()), teamName);
+        } catch (NumberFormatException e) {
+            throw new InvalidMemberRequestException("Malformed member line: " + line, e);
+        }
+    }
+
+    private static BufferedReader buffered(Reader reader) {
+        return reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    private static void close(Reader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,35 +1,63 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
-import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
-import study.querydsl.entity.QTeam;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * 조회는 읽기 전용 트랜잭션(flush 모드 MANUAL, 스냅샷 없음)에서 돈다. 쓰기 메서드만 @Transactional 을 따로 붙인다.
+ * 엔티티를 돌려주는 조회는 HINT_READONLY 라서 바깥 트랜잭션이 쓰기여도 dirty checking 대상이 아니다.
+ * 수정하려면 findById 로 다시 가져온다.
+ */
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final TeamDictionary teamDictionary;
+    private final int streamFetchSize;
+    private final int inChunkSize;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, TeamDictionary teamDictionary,
+                               @Value("${member.export.fetch-size:1000}") int streamFetchSize,
+                               @Value("${member.lookup.in-chunk-size:512}") int inChunkSize) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = queryFactory;
+        this.teamDictionary = teamDictionary;
+        if (inChunkSize <= 0) {
+            throw new IllegalArgumentException("inChunkSize must be positive: " + inChunkSize);
+        }
+        this.streamFetchSize = streamFetchSize;
+        // 조각을 2의 거듭제곱으로 채워도 설정값을 넘지 않도록 내림해 둔다 (500 -> 256)
+        this.inChunkSize = Integer.highestOneBit(inChunkSize);
     }
 
+    @Transactional
     public void save(Member member) {
         em.persist(member);
     }
@@ -39,19 +67,88 @@ public class MemberJpaRepository {
         return Optional.ofNullable(findMember);
     }
 
+    /**
+     * id 여러 개를 한 번에. 영속성 컨텍스트 -> 2차 캐시 순으로 먼저 찾고, 남은 id 만 IN 쿼리로 읽는다.
+     * 없는 id 는 결과 맵에 들어가지 않는다.
+     */
+    public Map<Long, Member> findAllByIds(Collection<Long> ids) {
+        Map<Long, Member> found = new LinkedHashMap<>();
+        List<Long> misses = new ArrayList<>();
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        Cache secondLevelCache = em.getEntityManagerFactory().getCache();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                found.put(id, (Member) managed);
+            } else if (secondLevelCache.contains(Member.class, id)) {
+                found.put(id, em.find(Member.class, id));
+            } else {
+                misses.add(id);
+            }
+        }
+
+        for (List<Long> chunk : paddedChunks(misses)) {
+            queryFactory
+                    .selectFrom(QMember.member)
+                    .where(QMember.member.id.in(chunk))
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .fetch()
+                    .forEach(member -> found.put(member.getId(), member));
+        }
+        return found;
+    }
+
+    /**
+     * username 여러 개를 한 번에. username 은 유일하지 않아서 영속성 컨텍스트만으로는 답할 수 없으니 전부 IN 쿼리로 읽는다.
+     */
+    public Map<String, List<Member>> findByUsernames(Collection<String> usernames) {
+        Map<String, List<Member>> found = new LinkedHashMap<>();
+        for (List<String> chunk : paddedChunks(new ArrayList<>(new LinkedHashSet<>(usernames)))) {
+            queryFactory
+                    .selectFrom(QMember.member)
+                    .where(QMember.member.username.in(chunk))
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .fetch()
+                    .forEach(member -> found.computeIfAbsent(member.getUsername(), k -> new ArrayList<>()).add(member));
+        }
+        return found;
+    }
+
+    // inChunkSize 씩 자르고 각 조각을 2의 거듭제곱 크기로(마지막 값을 반복) 채워서 IN 절 모양의 가짓수를 줄인다.
+    // inChunkSize 가 2의 거듭제곱이라 채운 조각도 inChunkSize 를 넘지 않는다
+    <T> List<List<T>> paddedChunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += inChunkSize) {
+            List<T> chunk = new ArrayList<>(values.subList(from, Math.min(from + inChunkSize, values.size())));
+            int padded = Integer.highestOneBit(chunk.size() - 1) << 1;
+            T last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
     public List<Member> findAll() {
-        return em.createQuery("select m from Member as m", Member.class).getResultList();
+        return em.createQuery("select m from Member as m", Member.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
     }
 
     public List<Member> findAll_Querydsl() {
         return queryFactory
                 .selectFrom(QMember.member)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member as m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .getResultList();
     }
 
@@ -59,17 +156,22 @@ public class MemberJpaRepository {
         return queryFactory
                 .selectFrom(QMember.member)
                 .where(QMember.member.username.eq(username))
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return new ArrayList<>();
+        }
 
         BooleanBuilder builder = new BooleanBuilder();
         if (StringUtils.hasText(condition.getUsername())) {
             builder.and(QMember.member.username.eq(condition.getUsername()));
         }
         if (StringUtils.hasText(condition.getTeamName())) {
-            builder.and(QTeam.team.name.eq(condition.getTeamName()));
+            builder.and(teamDictionary.teamNameEq(condition.getTeamName()));
         }
         if(condition.getAgeGoe() != null) {
             builder.and(QMember.member.age.goe(condition.getAgeGoe()));
@@ -78,54 +180,45 @@ public class MemberJpaRepository {
             builder.and(QMember.member.age.loe(condition.getAgeLoe()));
         }
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        QMember.member.id.as("memberId"),
-                        QMember.member.username,
-                        QMember.member.age,
-                        QTeam.team.id.as("teamId"),
-                        QTeam.team.name.as("teamName")
-                ))
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
+        return MemberSearchQueries.selectMemberTeam(queryFactory)
                 .where(builder)
                 .fetch();
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        QMember.member.id.as("memberId"),
-                        QMember.member.username,
-                        QMember.member.age,
-                        QTeam.team.id.as("teamId"),
-                        QTeam.team.name.as("teamName")
-                ))
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLog(condition.getAgeLoe())
-                )
+        // 없는 팀 이름이면 쿼리 없이 빈 결과
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return new ArrayList<>();
+        }
+        return MemberSearchQueries.selectMemberTeam(queryFactory)
+                .where(where(condition))
                 .fetch();
     }
 
-
-    private BooleanExpression usernameEq(String username) {
-        return StringUtils.hasText(username) ? QMember.member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return StringUtils.hasText(teamName) ? QTeam.team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? QMember.member.age.goe(ageGoe) : null;
+    /**
+     * search 와 같은 조건이지만 결과를 List 로 모으지 않고 forward-only 커서로 한 건씩 넘긴다.
+     * DTO 프로젝션이라 영속성 컨텍스트에도 쌓이지 않으므로 전체를 내려도 메모리가 일정하다.
+     */
+    public long searchStream(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return 0;
+        }
+        long count = 0;
+        try (CloseableIterator<MemberTeamDto> iterator = MemberSearchQueries.selectMemberTeam(queryFactory)
+                .where(where(condition))
+                .setHint(QueryHints.HINT_FETCH_SIZE, streamFetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .iterate()) {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+        return count;
     }
 
-    private BooleanExpression ageLog(Integer ageLoe) {
-        return ageLoe != null ? QMember.member.age.loe(ageLoe) : null;
+    // 팀 사전에 있으면 member.team_id 조건, 아니면 team.name 서브쿼리 조건
+    private Predicate where(MemberSearchCondition condition) {
+        return MemberSearchQueries.where(condition, teamDictionary::teamNameEq);
     }
 }
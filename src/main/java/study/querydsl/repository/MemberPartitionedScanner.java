@@ -0,0 +1,228 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.metrics.InstrumentedJPAQueryFactory;
+import study.querydsl.metrics.QueryMetrics;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * export/재색인처럼 조건에 맞는 회원 전체를 읽는 작업을 member_id 범위 N 개로 나눠 병렬로 읽는다.
+ * 범위마다 자기 EntityManager(커넥션)와 읽기 전용 트랜잭션, forward-only 커서를 쓰고, 읽은 행은 크기가 정해진 큐에 넣는다.
+ * consumer 는 scan 을 부른 스레드에서만 불리므로 thread-safe 하지 않아도 되고, 큐가 차면 읽는 쪽이 기다린다.
+ *
+ * 범위마다 트랜잭션이 따로라서 전체가 한 시점의 스냅샷은 아니고, 행 순서도 범위끼리 섞인다.
+ * 동시에 잡히는 커넥션 수가 threads 를 넘지 않으니 커넥션 풀보다 작게 잡는다.
+ *
+ * 동시에 도는 scan 은 max-scans 개까지이고 넘으면 RejectedExecutionException(503)으로 거절한다.
+ * scan 하나가 쓰는 범위 수는 threads / max-scans 를 넘지 않아서, 소비가 멈춘 scan 이 있어도
+ * 다른 scan 의 범위가 그 뒤에서 스레드를 기다리지 않는다.
+ */
+@Slf4j
+@Repository
+public class MemberPartitionedScanner {
+
+    private static final Object END = new Object();
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final QueryMetrics queryMetrics;
+    private final TeamDictionary teamDictionary;
+    private final ExecutorService executor;
+    private final Semaphore scans;
+    private final int threadsPerScan;
+    private final int partitions;
+    private final int queueSize;
+    private final int fetchSize;
+
+    public MemberPartitionedScanner(EntityManagerFactory emf, JPAQueryFactory queryFactory, QueryMetrics queryMetrics,
+                                    TeamDictionary teamDictionary,
+                                    @Value("${member.scan.threads:8}") int threads,
+                                    @Value("${member.scan.max-scans:2}") int maxScans,
+                                    @Value("${member.scan.partitions:4}") int partitions,
+                                    @Value("${member.scan.queue-size:10000}") int queueSize,
+                                    @Value("${member.export.fetch-size:1000}") int fetchSize) {
+        this.emf = emf;
+        this.queryFactory = queryFactory;
+        this.queryMetrics = queryMetrics;
+        this.teamDictionary = teamDictionary;
+        if (maxScans <= 0 || threads < maxScans) {
+            throw new IllegalArgumentException("max-scans must be between 1 and threads(" + threads + "): " + maxScans);
+        }
+        this.scans = new Semaphore(maxScans);
+        this.threadsPerScan = threads / maxScans;
+        this.partitions = partitions;
+        this.queueSize = queueSize;
+        this.fetchSize = fetchSize;
+        // 호출한 스레드는 큐를 비워야 하므로 CallerRuns 가 아니라 작업을 쌓아 두고 차례로 돌린다.
+        // scan 수와 scan 당 범위 수를 제한하니 쌓이는 작업은 threads 개를 넘지 않는다
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "member-scan-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long scan(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+        return scan(condition, partitions, consumer);
+    }
+
+    public long scan(MemberSearchCondition condition, int partitions, Consumer<MemberTeamDto> consumer) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        }
+        if (!scans.tryAcquire()) {
+            throw new RejectedExecutionException("Too many concurrent member scans");
+        }
+        try {
+            return scanPartitions(condition, Math.min(partitions, threadsPerScan), consumer);
+        } finally {
+            scans.release();
+        }
+    }
+
+    private long scanPartitions(MemberSearchCondition condition, int partitions, Consumer<MemberTeamDto> consumer) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return 0;
+        }
+        Predicate where = where(condition);
+        Tuple bounds = MemberSearchQueries.fromMemberTeam(
+                        queryFactory.select(QMember.member.id.min(), QMember.member.id.max()))
+                .where(where)
+                .fetchOne();
+        Long minId = bounds == null ? null : bounds.get(QMember.member.id.min());
+        Long maxId = bounds == null ? null : bounds.get(QMember.member.id.max());
+        if (minId == null) {
+            return 0;
+        }
+
+        long step = Math.max(1, (maxId - minId) / partitions + 1);
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += step) {
+            long lower = from;
+            long upper = from + step;
+            futures.add(executor.submit(() -> scanPartition(where, lower, upper, queue, cancelled)));
+        }
+
+        int running = futures.size();
+        long count = 0;
+        try {
+            while (running > 0) {
+                Object item = queue.take();
+                if (item == END) {
+                    running--;
+                } else if (item instanceof Failure) {
+                    Throwable exception = ((Failure) item).exception;
+                    throw exception instanceof RuntimeException
+                            ? (RuntimeException) exception
+                            : new IllegalStateException("Partitioned scan failed", exception);
+                } else {
+                    consumer.accept((MemberTeamDto) item);
+                    count++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Partitioned scan interrupted");
+        } finally {
+            // consumer 가 실패했거나 범위 하나가 실패하면 나머지 범위도 멈춘다
+            if (running > 0) {
+                cancelled.set(true);
+                futures.forEach(future -> future.cancel(false));
+            }
+        }
+        log.debug("Partitioned scan read {} rows in {} partitions", count, futures.size());
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void scanPartition(Predicate where, long lower, long upper, BlockingQueue<Object> queue,
+                               AtomicBoolean cancelled) {
+        EntityManager em = null;
+        try {
+            em = ReadOnlyTransactions.begin(emf);
+            try (CloseableIterator<MemberTeamDto> iterator = MemberSearchQueries
+                    .selectMemberTeam(new InstrumentedJPAQueryFactory(em, queryMetrics))
+                    .where(where, QMember.member.id.goe(lower), QMember.member.id.lt(upper))
+                    .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .iterate()) {
+                while (iterator.hasNext()) {
+                    put(queue, iterator.next(), cancelled);
+                }
+            }
+            put(queue, END, cancelled);
+        } catch (CancellationException e) {
+            log.debug("Partitioned scan of ids {}..{} cancelled", lower, upper - 1);
+        } catch (RuntimeException | Error e) {
+            try {
+                put(queue, new Failure(e), cancelled);
+            } catch (CancellationException ignored) {
+                // 이미 멈추는 중이면 알릴 필요가 없다
+            }
+        } finally {
+            if (em != null) {
+                ReadOnlyTransactions.end(em);
+            }
+        }
+    }
+
+    // 큐가 차 있으면 기다리되, 소비하는 쪽이 멈췄으면 더 넣지 않고 빠져나간다
+    private static void put(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private Predicate where(MemberSearchCondition condition) {
+        return MemberSearchQueries.where(condition, teamDictionary::teamNameEq);
+    }
+
+    private static class Failure {
+        private final Throwable exception;
+
+        private Failure(Throwable exception) {
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 검색 쿼리를 요청 스레드 밖에서 돌리는 실행기.
+ * 기본은 크기가 고정된 풀(커넥션 풀보다 작게 잡는다)이고, 큐가 차면 호출한 스레드에서 그냥 실행한다.
+ * virtual-threads=true 이고 JDK 가 지원하면(Executors.newVirtualThreadPerTaskExecutor) 가상 스레드를 쓴다.
+ */
+@Slf4j
+@Component
+public class MemberQueryExecutor {
+
+    private final ExecutorService executor;
+
+    public MemberQueryExecutor(@Value("${member.search.async.threads:4}") int threads,
+                               @Value("${member.search.async.queue-size:100}") int queueSize,
+                               @Value("${member.search.async.virtual-threads:false}") boolean virtualThreads) {
+        ExecutorService virtual = virtualThreads ? virtualThreadExecutor() : null;
+        this.executor = virtual != null ? virtual : boundedPool(threads, queueSize);
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService boundedPool(int threads, int queueSize) {
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on this JDK, falling back to a bounded pool");
+            return null;
+        }
+    }
+}
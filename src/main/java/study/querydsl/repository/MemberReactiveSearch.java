@@ -0,0 +1,140 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.EmptyCloseableIterator;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.metrics.InstrumentedJPAQueryFactory;
+import study.querydsl.metrics.QueryMetrics;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 검색을 Flux/Mono 로 감싼다. JDBC 는 블로킹이라 모든 쿼리는 크기가 정해진 전용 스케줄러(member-reactive)에서 돌고,
+ * 요청 스레드는 구독만 하고 바로 돌아간다. 스케줄러 스레드와 대기열이 다 차면 새 구독은 거절된다.
+ *
+ * search 는 forward-only 커서에서 구독자가 요청한 만큼만 한 건씩 읽는다(Flux.generate).
+ * 커서는 자기 EntityManager(커넥션)와 읽기 전용 트랜잭션을 들고 있다가 완료/취소/에러 때 닫는다.
+ * 느린 클라이언트가 커넥션을 오래 잡을 수 있으니 동시에 열린 커서 수는 max-streams 로 제한한다.
+ */
+@Component
+public class MemberReactiveSearch {
+
+    private final EntityManagerFactory emf;
+    private final QueryMetrics queryMetrics;
+    private final MemberRepository memberRepository;
+    private final MemberSearchCoalescer searchCoalescer;
+    private final TeamDictionary teamDictionary;
+    private final Scheduler scheduler;
+    private final Semaphore streams;
+    private final int fetchSize;
+
+    public MemberReactiveSearch(EntityManagerFactory emf, QueryMetrics queryMetrics,
+                                MemberRepository memberRepository, MemberSearchCoalescer searchCoalescer,
+                                TeamDictionary teamDictionary,
+                                @Value("${member.reactive.threads:8}") int threads,
+                                @Value("${member.reactive.queue-size:1000}") int queueSize,
+                                @Value("${member.reactive.max-streams:8}") int maxStreams,
+                                @Value("${member.export.fetch-size:1000}") int fetchSize) {
+        this.emf = emf;
+        this.queryMetrics = queryMetrics;
+        this.memberRepository = memberRepository;
+        this.searchCoalescer = searchCoalescer;
+        this.teamDictionary = teamDictionary;
+        this.scheduler = Schedulers.newBoundedElastic(threads, queueSize, "member-reactive");
+        this.streams = new Semaphore(maxStreams);
+        this.fetchSize = fetchSize;
+    }
+
+    public Flux<MemberTeamDto> search(MemberSearchCondition condition) {
+        return Flux.<MemberTeamDto, Cursor>generate(
+                () -> open(condition),
+                (cursor, sink) -> {
+                    if (cursor.iterator.hasNext()) {
+                        sink.next(cursor.iterator.next());
+                    } else {
+                        sink.complete();
+                    }
+                    return cursor;
+                },
+                cursor -> {
+                    try {
+                        cursor.close();
+                    } finally {
+                        streams.release();
+                    }
+                })
+                .subscribeOn(scheduler);
+    }
+
+    public Mono<Page<MemberTeamDto>> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return Mono.fromCallable(() -> memberRepository.searchPageSimple(condition, pageable))
+                .subscribeOn(scheduler);
+    }
+
+    public Mono<Page<MemberTeamDto>> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return Mono.fromCallable(() -> searchCoalescer.searchPageComplex(condition, pageable))
+                .subscribeOn(scheduler);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    private Cursor open(MemberSearchCondition condition) {
+        if (!streams.tryAcquire()) {
+            throw new RejectedExecutionException("Too many concurrent member streams");
+        }
+        EntityManager em = null;
+        try {
+            em = ReadOnlyTransactions.begin(emf);
+            // 없는 팀 이름이면 쿼리 없이 빈 커서
+            CloseableIterator<MemberTeamDto> iterator = teamDictionary.isUnknown(condition.getTeamName())
+                    ? new EmptyCloseableIterator<>()
+                    : MemberSearchQueries.selectMemberTeam(new InstrumentedJPAQueryFactory(em, queryMetrics))
+                            .where(MemberSearchQueries.where(condition, teamDictionary::teamNameEq))
+                            .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                            .setHint(QueryHints.HINT_READONLY, true)
+                            .iterate();
+            return new Cursor(em, iterator);
+        } catch (RuntimeException e) {
+            if (em != null) {
+                ReadOnlyTransactions.end(em);
+            }
+            streams.release();
+            throw e;
+        }
+    }
+
+    private static class Cursor {
+        private final EntityManager em;
+        private final CloseableIterator<MemberTeamDto> iterator;
+
+        private Cursor(EntityManager em, CloseableIterator<MemberTeamDto> iterator) {
+            this.em = em;
+            this.iterator = iterator;
+        }
+
+        private void close() {
+            try {
+                iterator.close();
+            } finally {
+                ReadOnlyTransactions.end(em);
+            }
+        }
+    }
+}
@@ -1,130 +1,259 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
-import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
-import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
-import study.querydsl.entity.QTeam;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
 
-@RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class MemberRepositoryCustomImpl implements MemberRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final MemberQueryExecutor queryExecutor;
+    private final MemberSearchTemplates searchTemplates;
+    private final TeamDictionary teamDictionary;
+    private final MemberTableStatistics tableStatistics;
+    private final TransactionTemplate readOnlyTx;
 
+    public MemberRepositoryCustomImpl(JPAQueryFactory queryFactory, MemberCountCache countCache,
+                                      MemberQueryExecutor queryExecutor, MemberSearchTemplates searchTemplates,
+                                      TeamDictionary teamDictionary, MemberTableStatistics tableStatistics,
+                                      PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.countCache = countCache;
+        this.queryExecutor = queryExecutor;
+        this.searchTemplates = searchTemplates;
+        this.teamDictionary = teamDictionary;
+        this.tableStatistics = tableStatistics;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    // 조건 조합별로 미리 만들어 둔 JPQL 에 값만 바인딩한다 (MemberSearchTemplates)
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        QMember.member.id.as("memberId"),
-                        QMember.member.username,
-                        QMember.member.age,
-                        QTeam.team.id.as("teamId"),
-                        QTeam.team.name.as("teamName")
-                ))
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        return searchTemplates.search(condition);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        QMember.member.id.as("memberId"),
-                        QMember.member.username,
-                        QMember.member.age,
-                        QTeam.team.id.as("teamId"),
-                        QTeam.team.name.as("teamName")
-                ))
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return Page.empty(pageable);
+        }
+        List<MemberTeamDto> content = contentQuery(condition)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetchResults();
+                .fetch();
 
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+        // fetchResults() 는 매번 count 쿼리를 같이 날리므로 count 는 캐시를 거친다
+        long total = countCache.get(condition, () -> countQuery(condition).fetchOne());
 
         return new PageImpl<>(content, pageable, total);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        QMember.member.id.as("memberId"),
-                        QMember.member.username,
-                        QMember.member.age,
-                        QTeam.team.id.as("teamId"),
-                        QTeam.team.name.as("teamName")
-                ))
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return Page.empty(pageable);
+        }
+        List<MemberTeamDto> content = contentQuery(condition)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(QMember.member)
-                .from(QMember.member)
-                .leftJoin(QMember.member.team, QTeam.team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
-
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        JPAQuery<Long> countQuery = countQuery(condition);
+
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.get(condition, countQuery::fetchOne));
 //        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
 //        return new PageImpl<>(content, pageable, total);
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return StringUtils.hasText(username) ? QMember.member.username.eq(username) : null;
+    /**
+     * 전체 건수 없이 다음 페이지 존재 여부만 필요할 때(무한 스크롤). size + 1 건을 읽어서 남는 한 건으로 hasNext 를 판단한다.
+     */
+    @Override
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return new SliceImpl<>(new ArrayList<>(), pageable, false);
+        }
+        List<MemberTeamDto> content = contentQuery(condition)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1)
+                .fetch();
+
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content.remove(content.size() - 1);
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return Page.empty(pageable);
+        }
+        List<MemberTeamDto> content = contentQuery(condition)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        // 마지막 페이지면 정확한 total 을 알 수 있다
+        if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            return new PageImpl<>(content, pageable, pageable.getOffset() + content.size());
+        }
+
+        // 정확한 count 가 캐시에 있으면 쓰고, 조건 없는 검색이면 DB 통계의 member 테이블 행 수 추정치를 쓴다.
+        // 조건이 있으면 테이블 행 수는 너무 커서 빈 페이지를 많이 보여주므로 세지 않고 "다음 페이지가 있다"만 알린다
+        long total = countCache.peek(condition)
+                .orElseGet(() -> (isUnfiltered(condition) ? tableStatistics.estimatedRowCount() : OptionalLong.empty())
+                        .orElse(0));
+
+        // 페이지가 꽉 찼으면 다음 페이지가 있을 수 있다. 통계가 늦거나 모자라도(reltuples = -1 등) hasNext 는 true
+        long minimum = pageable.getOffset() + content.size() + (content.size() == pageable.getPageSize() ? 1 : 0);
+        return new PageImpl<>(content, pageable, Math.max(total, minimum));
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return StringUtils.hasText(teamName) ? QTeam.team.name.eq(teamName) : null;
+    private static boolean isUnfiltered(MemberSearchCondition condition) {
+        return !StringUtils.hasText(condition.getUsername()) && !StringUtils.hasText(condition.getTeamName())
+                && condition.getAgeGoe() == null && condition.getAgeLoe() == null;
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? QMember.member.age.goe(ageGoe) : null;
+    /**
+     * content 와 count 쿼리를 각각 다른 스레드(다른 커넥션, 읽기 전용 트랜잭션)에서 동시에 실행한다.
+     * 요청 스레드의 트랜잭션과는 무관하므로 커밋된 데이터만 보인다.
+     * 요청 스레드는 쿼리를 날리지 않으니 클래스의 읽기 전용 트랜잭션(커넥션)을 열지 않는다.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable) {
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return CompletableFuture.completedFuture(Page.empty(pageable));
+        }
+        CompletableFuture<List<MemberTeamDto>> content = queryExecutor.supply(() -> readOnlyTx.execute(status ->
+                contentQuery(condition)
+                        .orderBy(MemberSort.orderBy(pageable.getSort()))
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch()));
+
+        CompletableFuture<Long> total = queryExecutor.supply(() -> readOnlyTx.execute(status ->
+                countCache.get(condition, () -> countQuery(condition).fetchOne())));
+
+        return content.thenCombine(total, (rows, count) -> PageableExecutionUtils.getPage(rows, pageable, () -> count));
+    }
+
+    @Override
+    public MemberCursorPage searchByCursor(MemberSearchCondition condition, String cursor, String sort, int size) {
+        if (size < 1) {
+            throw new InvalidMemberRequestException("size must be positive: " + size);
+        }
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return new MemberCursorPage(new ArrayList<>(), null);
+        }
+
+        MemberCursor after = StringUtils.hasText(cursor) ? MemberCursor.decode(cursor) : null;
+        MemberCursor.SortKey sortKey = after != null ? after.getSortKey() : MemberCursor.SortKey.of(sort);
+
+        // offset 대신 마지막 키 이후부터 seek, 한 건 더 읽어서 다음 페이지 여부를 판단한다
+        List<MemberTeamDto> rows = contentQuery(condition)
+                .where(seekAfter(after))
+                .orderBy(keysetOrder(sortKey))
+                .limit(size + 1)
+                .fetch();
+
+        if (rows.size() <= size) {
+            return new MemberCursorPage(rows, null);
+        }
+
+        List<MemberTeamDto> content = rows.subList(0, size);
+        String nextCursor = MemberCursor.after(sortKey, content.get(size - 1)).encode();
+        return new MemberCursorPage(new ArrayList<>(content), nextCursor);
+    }
+
+    private BooleanExpression seekAfter(MemberCursor after) {
+        if (after == null) {
+            return null;
+        }
+
+        QMember member = QMember.member;
+        switch (after.getSortKey()) {
+            case AGE:
+                return member.age.gt(after.getLastAge())
+                        .or(member.age.eq(after.getLastAge()).and(member.id.gt(after.getLastId())));
+            case USERNAME:
+                // null username 은 맨 앞(nullsFirst)에 정렬되므로 null 구간을 다 읽은 뒤 non-null 로 넘어간다
+                if (after.getLastUsername() == null) {
+                    return member.username.isNull().and(member.id.gt(after.getLastId()))
+                            .or(member.username.isNotNull());
+                }
+                return member.username.gt(after.getLastUsername())
+                        .or(member.username.eq(after.getLastUsername()).and(member.id.gt(after.getLastId())));
+            default:
+                return member.id.gt(after.getLastId());
+        }
+    }
+
+    private OrderSpecifier<?>[] keysetOrder(MemberCursor.SortKey sortKey) {
+        QMember member = QMember.member;
+        switch (sortKey) {
+            case AGE:
+                return new OrderSpecifier<?>[]{member.age.asc(), member.id.asc()};
+            case USERNAME:
+                return new OrderSpecifier<?>[]{member.username.asc().nullsFirst(), member.id.asc()};
+            default:
+                return new OrderSpecifier<?>[]{member.id.asc()};
+        }
+    }
+
+    /**
+     * 검색 API 가 같이 쓰는 content 쿼리 (정렬/페이징은 부르는 쪽에서 붙인다).
+     */
+    private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition) {
+        return MemberSearchQueries.selectMemberTeam(queryFactory)
+                .where(where(condition));
+    }
+
+    /**
+     * 조건에 쓰인 predicate 만으로 만든 최소 count 쿼리.
+     * team 조건은 team_id 나 서브쿼리로만 걸리고 left join 은 row 수를 바꾸지 못하므로 조인하지 않는다.
+     */
+    private JPAQuery<Long> countQuery(MemberSearchCondition condition) {
+        return queryFactory
+                .select(QMember.member.id.count())
+                .from(QMember.member)
+                .where(where(condition));
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? QMember.member.age.loe(ageLoe) : null;
+    // teamName 은 팀 사전에 있으면 member.team_id 조건, 아니면 team.name 서브쿼리 조건
+    private Predicate where(MemberSearchCondition condition) {
+        return MemberSearchQueries.where(condition, teamDictionary::teamNameEq);
     }
 }
@@ -0,0 +1,174 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.TeamChangedEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 같은 조건(+ Pageable)의 검색이 동시에 들어오면 먼저 온 요청 하나만 실행하고 나머지는 그 결과를 같이 받는다.
+ * ttl-millis 가 0 보다 크면 끝난 결과를 그 시간 동안 더 들고 있다가 같은 검색에 그대로 돌려준다.
+ * Member/Team 이 바뀌면 들고 있던 결과를 버리고, 실행 중에 바뀌었으면 그 결과는 들고 있지 않는다.
+ *
+ * 쓰기 트랜잭션 안에서는 아직 커밋되지 않은 변경이 보여야 하므로 합치지 않고 바로 실행한다.
+ * 결과 객체를 여러 요청이 같이 쓰므로 받은 쪽에서 고치면 안 된다.
+ */
+@Component
+public class MemberSearchCoalescer {
+
+    private final MemberRepository memberRepository;
+    private final long ttlMillis;
+    private final Map<List<Object>, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cached = new AtomicLong();
+
+    public MemberSearchCoalescer(MemberRepository memberRepository, MeterRegistry registry,
+                                 @Value("${member.search.coalesce.ttl-millis:0}") long ttlMillis) {
+        this.memberRepository = memberRepository;
+        this.ttlMillis = ttlMillis;
+        FunctionCounter.builder("member.search.coalesce", executed, AtomicLong::get)
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("member.search.coalesce", coalesced, AtomicLong::get)
+                .tag("result", "coalesced")
+                .register(registry);
+        FunctionCounter.builder("member.search.coalesce", cached, AtomicLong::get)
+                .tag("result", "cached")
+                .register(registry);
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        List<Object> key = Arrays.asList("searchPageComplex",
+                StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null,
+                StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                condition.getAgeGoe(), condition.getAgeLoe(), pageable);
+        return coalesce(key, () -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    public long executedCount() {
+        return executed.get();
+    }
+
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    public long cachedCount() {
+        return cached.get();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        // 실행 중인 것도 빼서 이후 요청은 새로 실행한다 (이미 기다리는 요청은 그 결과를 받는다)
+        flights.clear();
+    }
+
+    @EventListener({MemberChangedEvent.class, TeamChangedEvent.class})
+    public void onChange() {
+        invalidateAll();
+    }
+
+    // 쓰기 트랜잭션이 커밋되기 전에 시작된 검색 결과는 커밋 이후에는 맞지 않으니 한번 더 비운다
+    @TransactionalEventListener(classes = {MemberChangedEvent.class, TeamChangedEvent.class},
+            phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterCompletion() {
+        invalidateAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T coalesce(List<Object> key, Supplier<T> search) {
+        if (inWriteTransaction()) {
+            executed.incrementAndGet();
+            return search.get();
+        }
+
+        Flight flight = new Flight(generation.get());
+        Flight existing = flights.putIfAbsent(key, flight);
+        while (existing != null) {
+            if (!existing.isExpired()) {
+                (existing.future.isDone() ? cached : coalesced).incrementAndGet();
+                return (T) join(existing);
+            }
+            // 들고 있던 결과가 만료됐으면 새로 실행한다
+            existing = flights.replace(key, existing, flight) ? null : flights.putIfAbsent(key, flight);
+        }
+
+        executed.incrementAndGet();
+        T result;
+        try {
+            result = search.get();
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        }
+
+        if (ttlMillis > 0 && flight.generation == generation.get()) {
+            flight.expiresAt = System.currentTimeMillis() + ttlMillis;
+            CompletableFuture.delayedExecutor(ttlMillis, TimeUnit.MILLISECONDS)
+                    .execute(() -> flights.remove(key, flight));
+        } else {
+            flights.remove(key, flight);
+        }
+        flight.future.complete(result);
+        return result;
+    }
+
+    private static Object join(Flight flight) {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            // 먼저 온 요청이 받은 예외를 그대로 던진다
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static class Flight {
+        private final long generation;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        // 실행 중에는 만료되지 않는다
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Flight(long generation) {
+            this.generation = generation;
+        }
+
+        private boolean isExpired() {
+            return expiresAt < System.currentTimeMillis();
+        }
+    }
+}
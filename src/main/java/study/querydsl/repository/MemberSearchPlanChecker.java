@@ -0,0 +1,224 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.metrics.PredicateShape;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 검색 조건 조합(username, teamName, ageGoe, ageLoe 의 16가지)마다 실제 SQL 을 EXPLAIN 해서
+ * 여전히 풀 스캔하는 조합이 있으면 경고를 남긴다.
+ * 쿼리는 검색과 같은 MemberSearchQueries 로 만들고, teamName 은 팀 사전을 거친 조건(member.team_id)과
+ * 쓰기 트랜잭션에서 쓰는 team.name 서브쿼리 조건을 둘 다 본다.
+ *
+ * SQL 번역과 파라미터 바인딩은 하이버네이트가 그대로 하고, 이 점검용 세션에만 넘긴 커넥션이
+ * 쿼리 대신 "EXPLAIN " + SQL 을 실행해서 결과(plan)를 가로챈다. 검색 쿼리는 실제로 돌지 않는다.
+ * EXPLAIN 결과 형식이 DB 마다 달라서 지금은 H2 에서만 동작한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.search.plan-check.enabled", havingValue = "true")
+public class MemberSearchPlanChecker {
+
+    private static final String TABLE_SCAN = "tableScan";
+    // DB 에 팀이 하나도 없을 때 쓰는 이름 (서브쿼리 조건의 plan 은 값과 상관없다)
+    private static final String DEFAULT_TEAM_NAME = "teamA";
+
+    private final JPAQueryFactory queryFactory;
+    private final SessionFactory sessionFactory;
+    private final DataSource dataSource;
+    private final TeamDictionary teamDictionary;
+
+    public MemberSearchPlanChecker(JPAQueryFactory queryFactory, EntityManagerFactory emf, DataSource dataSource,
+                                   TeamDictionary teamDictionary) {
+        this.queryFactory = queryFactory;
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.dataSource = dataSource;
+        this.teamDictionary = teamDictionary;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            check();
+        } catch (SQLException e) {
+            log.warn("Search plan check failed", e);
+        }
+    }
+
+    /**
+     * @return 풀 스캔하는 조건 조합 -> EXPLAIN 결과
+     */
+    public Map<String, String> check() throws SQLException {
+        Map<String, String> scans = new LinkedHashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            if (!"H2".equals(connection.getMetaData().getDatabaseProductName())) {
+                log.info("Search plan check skipped: EXPLAIN output is only understood for H2");
+                return scans;
+            }
+
+            String teamName = anyTeamName();
+            List<Function<String, BooleanExpression>> teamNameConditions = new ArrayList<>();
+            // 사전이 모르는 이름이면 검색은 쿼리 없이 끝나니 볼 plan 이 없다
+            if (!teamDictionary.isUnknown(teamName)) {
+                teamNameConditions.add(teamDictionary::teamNameEq);
+            }
+            teamNameConditions.add(MemberSearchQueries::teamNameInSubquery);
+
+            List<String> plans = new ArrayList<>();
+            try (Session session = sessionFactory.withOptions().connection(explaining(connection, plans)).openSession()) {
+                JPAQueryFactory explainFactory = new JPAQueryFactory(session);
+
+                // 조건이 하나도 없는 조합(0)은 원래 전체를 읽으니 제외
+                for (int mask = 1; mask < 16; mask++) {
+                    MemberSearchCondition condition = condition(mask, teamName);
+                    // teamName 이 없는 조합은 teamNameEq 를 쓰지 않으니 한 번만 본다
+                    for (Function<String, BooleanExpression> teamNameEq
+                            : (mask & 2) != 0 ? teamNameConditions : teamNameConditions.subList(0, 1)) {
+                        JPAQuery<?> query = MemberSearchQueries.selectMemberTeam(explainFactory)
+                                .where(MemberSearchQueries.where(condition, teamNameEq));
+                        String shape = PredicateShape.of(query.getMetadata().getWhere(), QMember.member.getMetadata().getName());
+
+                        plans.clear();
+                        query.fetch();
+                        for (String plan : plans) {
+                            if (plan.contains(TABLE_SCAN)) {
+                                scans.put(shape, plan);
+                                log.warn("Search predicate [{}] still scans a whole table:\n{}", shape, plan);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (scans.isEmpty()) {
+            log.info("Search plan check passed: every predicate combination uses an index");
+        }
+        return scans;
+    }
+
+    private String anyTeamName() {
+        String name = queryFactory
+                .select(QTeam.team.name)
+                .from(QTeam.team)
+                .where(QTeam.team.name.isNotNull())
+                .fetchFirst();
+        return name != null ? name : DEFAULT_TEAM_NAME;
+    }
+
+    private static MemberSearchCondition condition(int mask, String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((mask & 1) != 0) {
+            condition.setUsername("member1");
+        }
+        if ((mask & 2) != 0) {
+            condition.setTeamName(teamName);
+        }
+        if ((mask & 4) != 0) {
+            condition.setAgeGoe(10);
+        }
+        if ((mask & 8) != 0) {
+            condition.setAgeLoe(40);
+        }
+        return condition;
+    }
+
+    /**
+     * prepareStatement 로 받은 SQL 앞에 EXPLAIN 을 붙이고, executeQuery 때 plan 을 plans 에 담은 뒤
+     * 빈 결과를 돌려주는 커넥션. 나머지 호출은 원래 커넥션으로 넘긴다.
+     */
+    private static Connection explaining(Connection connection, List<String> plans) {
+        return proxy(Connection.class, (method, args) -> {
+            if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String) {
+                args[0] = "EXPLAIN " + args[0];
+                return explaining((PreparedStatement) method.invoke(connection, args), plans);
+            }
+            return method.invoke(connection, args);
+        });
+    }
+
+    private static PreparedStatement explaining(PreparedStatement statement, List<String> plans) {
+        return proxy(PreparedStatement.class, (method, args) -> {
+            if (method.getName().equals("executeQuery") && (args == null || args.length == 0)) {
+                try (ResultSet rs = statement.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                    plans.add(plan.toString());
+                }
+                return emptyResultSet();
+            }
+            return method.invoke(statement, args);
+        });
+    }
+
+    private static ResultSet emptyResultSet() {
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                case "isClosed":
+                case "wasNull":
+                    return false;
+                case "close":
+                case "clearWarnings":
+                case "getWarnings":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException("ResultSet." + method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            // 하이버네이트가 statement 를 맵 키로 쓰므로 equals/hashCode 는 프록시 자신 기준
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + " for search plan check";
+                default:
+                    break;
+            }
+            try {
+                return invocation.invoke(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Invocation {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+}
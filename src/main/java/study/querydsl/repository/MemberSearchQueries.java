@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+
+import java.util.function.Function;
+
+/**
+ * 회원 검색 쿼리들이 같이 쓰는 프로젝션, from/join, 검색 조건.
+ * 검색 조건이 늘면 where 에만 추가하면 된다.
+ */
+final class MemberSearchQueries {
+
+    private MemberSearchQueries() {
+    }
+
+    static QMemberTeamDto memberTeam() {
+        return new QMemberTeamDto(
+                QMember.member.id.as("memberId"),
+                QMember.member.username,
+                QMember.member.age,
+                QTeam.team.id.as("teamId"),
+                QTeam.team.name.as("teamName"));
+    }
+
+    static JPAQuery<MemberTeamDto> selectMemberTeam(JPAQueryFactory queryFactory) {
+        return fromMemberTeam(queryFactory.select(memberTeam()));
+    }
+
+    // 팀이 없는 회원도 나와야 하므로 left join
+    static <T> JPAQuery<T> fromMemberTeam(JPAQuery<T> query) {
+        return query
+                .from(QMember.member)
+                .leftJoin(QMember.member.team, QTeam.team);
+    }
+
+    /**
+     * 검색 조건 전체. teamName 조건은 쿼리마다 달라서(팀 사전, 조인 없는 서브쿼리) 부르는 쪽이 넘긴다.
+     */
+    static BooleanBuilder where(MemberSearchCondition condition, Function<String, BooleanExpression> teamNameEq) {
+        return new BooleanBuilder()
+                .and(usernameEq(condition.getUsername()))
+                .and(StringUtils.hasText(condition.getTeamName()) ? teamNameEq.apply(condition.getTeamName()) : null)
+                .and(ageGoe(condition.getAgeGoe()))
+                .and(ageLoe(condition.getAgeLoe()));
+    }
+
+    static BooleanExpression usernameEq(String username) {
+        return StringUtils.hasText(username) ? QMember.member.username.eq(username) : null;
+    }
+
+    /**
+     * 조인 없이 서브쿼리로 거는 팀 이름 조건. update/delete 쿼리에도 쓸 수 있고,
+     * left join 뒤의 team.name 조건과 달리 idx_team_name 에서 시작하므로 member 를 풀 스캔하지 않는다.
+     */
+    static BooleanExpression teamNameInSubquery(String teamName) {
+        return teamNameInSubquery(Expressions.constant(teamName));
+    }
+
+    static BooleanExpression teamNameInSubquery(Expression<String> teamName) {
+        return QMember.member.team.id.in(JPAExpressions
+                .select(QTeam.team.id)
+                .from(QTeam.team)
+                .where(QTeam.team.name.eq(teamName)));
+    }
+
+    static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? QMember.member.age.goe(ageGoe) : null;
+    }
+
+    static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? QMember.member.age.loe(ageLoe) : null;
+    }
+}
@@ -0,0 +1,181 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.metrics.PredicateShape;
+import study.querydsl.metrics.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * search 쿼리를 조건 조합(어떤 필드가 채워졌는지, teamName 은 팀 사전에서 id 로 바뀌었는지까지)별로 한 번만 만들어 두는 캐시.
+ * 값은 Param 으로 두고 JPQL 을 미리 직렬화해 두기 때문에, 호출할 때는 파라미터 바인딩만 한다.
+ * JPQL 문자열이 조합마다 항상 같아서 Hibernate 의 쿼리 플랜 캐시도 매번 적중한다.
+ */
+@Component
+public class MemberSearchTemplates {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    private static final Param<Long> TEAM_ID = new Param<>(Long.class, "teamId");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+
+    private final EntityManager em;
+    private final QueryMetrics queryMetrics;
+    private final TeamDictionary teamDictionary;
+    private final AtomicReferenceArray<Template> templates = new AtomicReferenceArray<>(32);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MemberSearchTemplates(EntityManager em, QueryMetrics queryMetrics, TeamDictionary teamDictionary,
+                                 MeterRegistry registry) {
+        this.em = em;
+        this.queryMetrics = queryMetrics;
+        this.teamDictionary = teamDictionary;
+        FunctionCounter.builder("member.search.template", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("member.search.template", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        Map<ParamExpression<?>, Object> values = new HashMap<>();
+        int shape = 0;
+        if (StringUtils.hasText(condition.getUsername())) {
+            values.put(USERNAME, condition.getUsername());
+            shape |= 1;
+        }
+        if (StringUtils.hasText(condition.getTeamName())) {
+            List<Long> teamIds = teamDictionary.teamIds(condition.getTeamName()).orElse(null);
+            if (teamIds != null && teamIds.isEmpty()) {
+                // 없는 팀 이름이면 쿼리 없이 빈 결과
+                return new ArrayList<>();
+            }
+            if (teamIds != null && teamIds.size() == 1) {
+                values.put(TEAM_ID, teamIds.get(0));
+                shape |= 16;
+            } else {
+                // 사전을 쓸 수 없거나 같은 이름의 팀이 여럿이면 team.name 서브쿼리 조건으로
+                values.put(TEAM_NAME, condition.getTeamName());
+                shape |= 2;
+            }
+        }
+        if (condition.getAgeGoe() != null) {
+            values.put(AGE_GOE, condition.getAgeGoe());
+            shape |= 4;
+        }
+        if (condition.getAgeLoe() != null) {
+            values.put(AGE_LOE, condition.getAgeLoe());
+            shape |= 8;
+        }
+
+        Template template = template(shape);
+        long start = System.nanoTime();
+        Query query = em.createQuery(template.jpql);
+        JPAUtil.setConstants(query, template.constants, values);
+
+        List<?> rows = query.getResultList();
+        List<MemberTeamDto> results = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            results.add(template.projection.newInstance((Object[]) row));
+        }
+        queryMetrics.record("fetch", template.filters, System.nanoTime() - start, results.size(),
+                template.jpql, boundParameters(template, values));
+        return results;
+    }
+
+    // InstrumentedJPAQuery 가 넘기는 것과 같은 바인딩 값 -> 파라미터 이름 (Param 은 이번에 바인딩한 값으로 바꾼다)
+    private static Map<Object, String> boundParameters(Template template, Map<ParamExpression<?>, Object> values) {
+        Map<Object, String> parameters = new HashMap<>();
+        template.constants.forEach((constant, label) -> parameters.put(
+                constant instanceof ParamExpression ? values.get(constant) : constant, label));
+        return parameters;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    private Template template(int shape) {
+        Template template = templates.get(shape);
+        if (template != null) {
+            hits.incrementAndGet();
+            return template;
+        }
+        misses.incrementAndGet();
+        // 동시에 만들어져도 결과가 같으니 먼저 들어간 것을 쓴다
+        templates.compareAndSet(shape, null, build(shape));
+        return templates.get(shape);
+    }
+
+    private Template build(int shape) {
+        BooleanBuilder where = new BooleanBuilder();
+        if ((shape & 1) != 0) {
+            where.and(QMember.member.username.eq(USERNAME));
+        }
+        if ((shape & 2) != 0) {
+            where.and(MemberSearchQueries.teamNameInSubquery(TEAM_NAME));
+        }
+        if ((shape & 4) != 0) {
+            where.and(QMember.member.age.goe(AGE_GOE));
+        }
+        if ((shape & 8) != 0) {
+            where.and(QMember.member.age.loe(AGE_LOE));
+        }
+        if ((shape & 16) != 0) {
+            where.and(QMember.member.team.id.eq(TEAM_ID));
+        }
+
+        QMemberTeamDto projection = MemberSearchQueries.memberTeam();
+        QueryMetadata metadata = MemberSearchQueries.fromMemberTeam(new JPAQuery<>(em).select(projection))
+                .where(where)
+                .getMetadata();
+
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(metadata, false, null);
+        return new Template(serializer.toString(), serializer.getConstantToLabel(), projection,
+                PredicateShape.of(metadata.getWhere(), QMember.member.getMetadata().getName()));
+    }
+
+    private static class Template {
+        private final String jpql;
+        private final Map<Object, String> constants;
+        private final QMemberTeamDto projection;
+        private final String filters;
+
+        private Template(String jpql, Map<Object, String> constants, QMemberTeamDto projection, String filters) {
+            this.jpql = jpql;
+            this.constants = Map.copyOf(constants);
+            this.projection = projection;
+            this.filters = filters;
+        }
+    }
+}
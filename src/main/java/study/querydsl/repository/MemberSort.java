@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+import study.querydsl.entity.QMember;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pageable 의 Sort 를 OrderSpecifier 로 바꾼다.
+ * 인덱스가 있는 member 컬럼 하나로만 정렬할 수 있다. 컬럼을 여러 개 섞거나 인덱스가 없는 컬럼이면
+ * 테이블 전체 정렬(filesort)이 되므로 InvalidMemberRequestException.
+ * 같은 값끼리 페이지마다 순서가 바뀌지 않도록 마지막에 member.id 를 같은 방향으로 붙인다
+ * (방향이 섞이면 인덱스를 거꾸로 읽을 수 없다).
+ */
+final class MemberSort {
+
+    // 키는 MemberTeamDto 필드 이름 (id 는 memberId 별칭)
+    private static final Map<String, ComparableExpressionBase<?>> SORTABLE = Map.of(
+            "memberId", QMember.member.id,
+            "id", QMember.member.id,
+            "username", QMember.member.username,
+            "age", QMember.member.age,
+            "teamId", QMember.member.team.id);
+
+    private MemberSort() {
+    }
+
+    static OrderSpecifier<?>[] orderBy(Sort sort) {
+        List<Sort.Order> requested = sort.toList();
+        if (requested.isEmpty()) {
+            return new OrderSpecifier<?>[]{QMember.member.id.asc()};
+        }
+
+        Sort.Order first = requested.get(0);
+        ComparableExpressionBase<?> path = sortable(first);
+        if (path == QMember.member.id) {
+            if (requested.size() > 1) {
+                throw unsupported(sort);
+            }
+            return new OrderSpecifier<?>[]{order(path, first)};
+        }
+        // 두 번째는 같은 방향의 id 만 허용한다
+        if (requested.size() > 2 || (requested.size() == 2
+                && (sortable(requested.get(1)) != QMember.member.id
+                || requested.get(1).getDirection() != first.getDirection()))) {
+            throw unsupported(sort);
+        }
+        return new OrderSpecifier<?>[]{order(path, first), order(QMember.member.id, first)};
+    }
+
+    private static ComparableExpressionBase<?> sortable(Sort.Order order) {
+        ComparableExpressionBase<?> path = SORTABLE.get(order.getProperty());
+        if (path == null) {
+            throw new InvalidMemberRequestException("Unsupported sort property: " + order.getProperty()
+                    + " (allowed: memberId, username, age, teamId)");
+        }
+        return path;
+    }
+
+    private static OrderSpecifier<?> order(ComparableExpressionBase<?> path, Sort.Order direction) {
+        return direction.isAscending() ? path.asc() : path.desc();
+    }
+
+    private static InvalidMemberRequestException unsupported(Sort sort) {
+        return new InvalidMemberRequestException("Unsupported sort: " + sort
+                + " (sort by one of memberId, username, age, teamId, optionally followed by id in the same direction)");
+    }
+}
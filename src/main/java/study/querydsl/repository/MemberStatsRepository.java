@@ -0,0 +1,183 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.AgeBucketStatsDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.TeamChangedEvent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 팀별, 나이 구간별 집계. group by 는 DB 에서 하고 집계 결과만 가져온다.
+ * member.stats.materialized=true 면 조건별 결과를 들고 있다가 Member/Team 이 바뀔 때 버리고,
+ * 다음 조회 때 그 조건만 다시 계산한다. 키가 요청 값이라 MemberCountCache 처럼 TTL 과 max-size(LRU)로 크기를 묶는다.
+ * 바뀐 팀만 다시 계산하려면 회원이 원래 있던 팀을 알아야 하는데 MemberChangedEvent 에는 회원 id 만 있고
+ * 벌크 변경은 id 도 없어서, 변경이 있으면 결과를 전부 버린다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class MemberStatsRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final TeamDictionary teamDictionary;
+    private final boolean materialized;
+    private final long ttlMillis;
+    private final Map<List<Object>, CachedStats> results;
+    private long generation;
+
+    public MemberStatsRepository(JPAQueryFactory queryFactory, TeamDictionary teamDictionary,
+                                 @Value("${member.stats.materialized:true}") boolean materialized,
+                                 @Value("${member.stats.ttl-millis:60000}") long ttlMillis,
+                                 @Value("${member.stats.max-size:1000}") int maxSize) {
+        this.queryFactory = queryFactory;
+        this.teamDictionary = teamDictionary;
+        this.materialized = materialized;
+        this.ttlMillis = ttlMillis;
+        this.results = new LinkedHashMap<List<Object>, CachedStats>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedStats> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public MemberStatsDto stats(MemberSearchCondition condition, int bucketSize) {
+        if (bucketSize <= 0) {
+            throw new InvalidMemberRequestException("bucketSize must be positive: " + bucketSize);
+        }
+        if (teamDictionary.isUnknown(condition.getTeamName())) {
+            return new MemberStatsDto(List.of(), List.of());
+        }
+        if (!materialized || ttlMillis <= 0) {
+            return new MemberStatsDto(teamStats(condition), ageBucketStats(condition, bucketSize));
+        }
+
+        List<Object> key = Arrays.asList(
+                StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null,
+                StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                condition.getAgeGoe(), condition.getAgeLoe(), bucketSize);
+        long startGeneration;
+        synchronized (this) {
+            CachedStats cached = results.get(key);
+            if (cached != null) {
+                if (cached.expiresAt >= System.currentTimeMillis()) {
+                    return cached.stats;
+                }
+                results.remove(key);
+            }
+            startGeneration = generation;
+        }
+
+        MemberStatsDto stats = new MemberStatsDto(teamStats(condition), ageBucketStats(condition, bucketSize));
+        synchronized (this) {
+            // 계산하는 동안 변경이 있었으면 들고 있지 않는다
+            if (startGeneration == generation) {
+                results.put(key, new CachedStats(stats, System.currentTimeMillis() + ttlMillis));
+            }
+        }
+        return stats;
+    }
+
+    public List<TeamStatsDto> teamStats(MemberSearchCondition condition) {
+        NumberExpression<Long> count = QMember.member.count();
+        NumberExpression<Integer> sum = QMember.member.age.sum();
+        NumberExpression<Double> avg = QMember.member.age.avg();
+        NumberExpression<Integer> min = QMember.member.age.min();
+        NumberExpression<Integer> max = QMember.member.age.max();
+
+        return MemberSearchQueries.fromMemberTeam(
+                        queryFactory.select(QTeam.team.id, QTeam.team.name, count, sum, avg, min, max))
+                .where(where(condition))
+                .groupBy(QTeam.team.id, QTeam.team.name)
+                .orderBy(QTeam.team.name.asc().nullsLast())
+                .fetch().stream()
+                .map(tuple -> new TeamStatsDto(
+                        tuple.get(QTeam.team.id),
+                        tuple.get(QTeam.team.name),
+                        number(tuple, count, Number::longValue),
+                        number(tuple, sum, Number::longValue),
+                        number(tuple, avg, Number::doubleValue),
+                        number(tuple, min, Number::intValue),
+                        number(tuple, max, Number::intValue)))
+                .collect(Collectors.toList());
+    }
+
+    public List<AgeBucketStatsDto> ageBucketStats(MemberSearchCondition condition, int bucketSize) {
+        // 파라미터로 넘기면 select 와 group by 의 식이 달라져서 DB 가 거부하므로 숫자를 그대로 넣는다
+        NumberExpression<Integer> bucket = Expressions.numberTemplate(Integer.class, "{0} / " + bucketSize,
+                QMember.member.age);
+        NumberExpression<Long> count = QMember.member.count();
+        NumberExpression<Double> avg = QMember.member.age.avg();
+
+        return MemberSearchQueries.fromMemberTeam(queryFactory.select(bucket, count, avg))
+                .where(where(condition))
+                .groupBy(bucket)
+                .orderBy(bucket.asc().nullsLast())
+                .fetch().stream()
+                .map(tuple -> {
+                    Integer from = number(tuple, bucket, value -> value.intValue() * bucketSize);
+                    return new AgeBucketStatsDto(from, from != null ? from + bucketSize : null,
+                            number(tuple, count, Number::longValue),
+                            number(tuple, avg, Number::doubleValue));
+                })
+                .collect(Collectors.toList());
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        results.clear();
+    }
+
+    @EventListener({MemberChangedEvent.class, TeamChangedEvent.class})
+    public void onChange() {
+        invalidateAll();
+    }
+
+    // 트랜잭션 안에서 계산된 결과는 커밋/롤백 이후에는 맞지 않을 수 있으니 한번 더 비운다
+    @TransactionalEventListener(classes = {MemberChangedEvent.class, TeamChangedEvent.class},
+            phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterCompletion() {
+        invalidateAll();
+    }
+
+    // sum/count 는 DB 에 따라 Long/Integer/BigDecimal 로 온다. 집계할 값이 없어서 null 이면 0 으로 바꾸지 않고 null 그대로
+    private static <T> T number(Tuple tuple, NumberExpression<?> expression, Function<Number, T> type) {
+        Number value = (Number) tuple.get(expression);
+        return value != null ? type.apply(value) : null;
+    }
+
+    private Predicate where(MemberSearchCondition condition) {
+        return MemberSearchQueries.where(condition, teamDictionary::teamNameEq);
+    }
+
+    private static class CachedStats {
+        private final MemberStatsDto stats;
+        private final long expiresAt;
+
+        private CachedStats(MemberStatsDto stats, long expiresAt) {
+            this.stats = stats;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * DB 가 들고 있는 통계에서 member 테이블 행 수 추정치를 읽는다. 행을 세지 않으니 테이블 크기와 상관없이 싸다.
+ * 추정치라 커밋되지 않은 변경은 반영되지 않고, DB 에 따라 마지막 통계 갱신 시점의 값이다.
+ * 지원하지 않는 DB 면 비어 있는 값을 돌려준다.
+ */
+@Slf4j
+@Component
+public class MemberTableStatistics {
+
+    private final EntityManager em;
+    private final String estimateSql;
+
+    public MemberTableStatistics(EntityManager em, DataSource dataSource) {
+        this.em = em;
+        this.estimateSql = estimateSql(databaseProductName(dataSource));
+    }
+
+    public OptionalLong estimatedRowCount() {
+        if (estimateSql == null) {
+            return OptionalLong.empty();
+        }
+        List<?> rows = em.createNativeQuery(estimateSql).getResultList();
+        if (rows.isEmpty() || rows.get(0) == null) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Math.max(0, ((Number) rows.get(0)).longValue()));
+    }
+
+    private static String estimateSql(String productName) {
+        if (productName == null) {
+            return null;
+        }
+        switch (productName) {
+            case "H2":
+                return "select row_count_estimate from information_schema.tables"
+                        + " where table_schema = schema() and table_name = 'MEMBER'";
+            case "MySQL":
+            case "MariaDB":
+                return "select table_rows from information_schema.tables"
+                        + " where table_schema = database() and table_name = 'member'";
+            case "PostgreSQL":
+                return "select reltuples from pg_class where oid = to_regclass('member')";
+            default:
+                log.info("No row estimate for {}, estimated paging falls back to an exact member count", productName);
+                return null;
+        }
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return (String) JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            log.warn("Could not read database product name", e);
+            return null;
+        }
+    }
+}
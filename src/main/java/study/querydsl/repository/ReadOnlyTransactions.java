@@ -0,0 +1,50 @@
+package study.querydsl.repository;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 스프링 트랜잭션 밖(스캔/커서 스레드)에서 직접 여는 읽기 전용 EntityManager.
+ * @Transactional(readOnly = true) 와 같게 flush 를 끄고, 읽은 엔티티 스냅샷을 만들지 않고, 커넥션도 읽기 전용으로 둔다.
+ */
+final class ReadOnlyTransactions {
+
+    private ReadOnlyTransactions() {
+    }
+
+    static EntityManager begin(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Session session = em.unwrap(Session.class);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            session.setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            session.doWork(connection -> connection.setReadOnly(true));
+            return em;
+        } catch (RuntimeException | Error e) {
+            end(em);
+            throw e;
+        }
+    }
+
+    /**
+     * 읽기만 했으니 커밋 대신 롤백으로 끝내고 닫는다.
+     */
+    static void end(EntityManager em) {
+        try {
+            if (em.getTransaction().isActive()) {
+                try {
+                    // 풀로 돌아가는 커넥션은 다시 쓰기 가능으로
+                    em.unwrap(Session.class).doWork(connection -> connection.setReadOnly(false));
+                } finally {
+                    em.getTransaction().rollback();
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.TeamChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 팀 이름 -> 팀 id 사전. 검색 조건의 teamName 을 team.name 조건 대신 member.team_id 조건으로 바꾸고,
+ * 없는 이름이면 쿼리 없이 빈 결과를 낼 수 있게 한다.
+ *
+ * 기동할 때 전부 읽어 두고, Team 이 바뀌면(flush 시점과 트랜잭션 종료 후) 세대를 올려서 다음 조회 때 다시 읽는다.
+ * 엔티티 콜백은 flush 때 불리기 때문에 쓰기 트랜잭션 안에서는 아직 모르는 팀이 있을 수 있다.
+ * 그래서 쓰기 트랜잭션 안에서는 사전을 쓰지 않고 team.name 서브쿼리 조건을 쓴다.
+ *
+ * 다른 인스턴스나 벌크 SQL 로 바뀐 팀은 이벤트가 오지 않으므로 ttl-millis 마다 다시 읽고,
+ * 사전에 없는 이름이면 마지막으로 읽은 지 miss-reload-millis 가 지났을 때 한 번 더 읽어 본 뒤에 없다고 판단한다.
+ * 사전과 그 세대/읽은 시각은 한 스냅샷으로 바꿔 끼우므로 읽는 쪽이 서로 다른 시점의 값을 섞어 보지 않는다.
+ */
+@Slf4j
+@Component
+public class TeamDictionary {
+
+    private final JPAQueryFactory queryFactory;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long missReloadMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public TeamDictionary(JPAQueryFactory queryFactory,
+                          @Value("${member.team-dictionary.enabled:true}") boolean enabled,
+                          @Value("${member.team-dictionary.ttl-millis:60000}") long ttlMillis,
+                          @Value("${member.team-dictionary.miss-reload-millis:1000}") long missReloadMillis) {
+        this.queryFactory = queryFactory;
+        this.enabled = enabled;
+        this.ttlMillis = ttlMillis;
+        this.missReloadMillis = missReloadMillis;
+    }
+
+    /**
+     * @return 이름에 해당하는 팀 id (없는 이름이면 빈 리스트). 사전을 쓸 수 없으면 Optional.empty()
+     */
+    public Optional<List<Long>> teamIds(String teamName) {
+        if (!enabled || inWriteTransaction()) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot;
+        if (current == null || current.generation != generation.get()
+                || current.loadedAt + ttlMillis <= System.currentTimeMillis()) {
+            current = reload(current);
+        }
+        List<Long> ids = current.teamIds.get(teamName);
+        if (ids == null && current.loadedAt + missReloadMillis <= System.currentTimeMillis()) {
+            // 이벤트 없이 생긴 팀일 수 있으니 빈 결과로 끝내기 전에 한 번 다시 읽는다
+            ids = reload(current).teamIds.get(teamName);
+        }
+        return Optional.of(ids != null ? ids : List.of());
+    }
+
+    /**
+     * teamName 조건. 사전에서 찾으면 member.team.id 로, 아니면 team.name 서브쿼리 조건으로 만든다.
+     */
+    public BooleanExpression teamNameEq(String teamName) {
+        if (!StringUtils.hasText(teamName)) {
+            return null;
+        }
+        return teamIds(teamName)
+                .map(ids -> QMember.member.team.id.in(ids))
+                .orElseGet(() -> MemberSearchQueries.teamNameInSubquery(teamName));
+    }
+
+    /**
+     * 사전상 없는 팀 이름이면 true. 이때는 결과가 비어 있으니 쿼리를 날릴 필요가 없다.
+     */
+    public boolean isUnknown(String teamName) {
+        return StringUtils.hasText(teamName) && teamIds(teamName).map(List::isEmpty).orElse(false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (enabled) {
+            reload(null);
+        }
+    }
+
+    @EventListener(TeamChangedEvent.class)
+    public void onChange() {
+        generation.incrementAndGet();
+    }
+
+    // flush 때 올린 세대로 다시 읽었어도 그때는 커밋 전이었으니 끝난 뒤에 한번 더
+    @TransactionalEventListener(classes = TeamChangedEvent.class, phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterCompletion() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * seen 을 보고 다시 읽기로 했을 때 부른다. 그 사이 다른 스레드가 이미 새로 읽었으면 그것을 쓴다.
+     */
+    private synchronized Snapshot reload(Snapshot seen) {
+        long startGeneration = generation.get();
+        if (snapshot != null && snapshot != seen && snapshot.generation == startGeneration) {
+            return snapshot;
+        }
+
+        Map<String, List<Long>> loaded = new HashMap<>();
+        for (Tuple row : queryFactory
+                .select(QTeam.team.id, QTeam.team.name)
+                .from(QTeam.team)
+                .fetch()) {
+            loaded.computeIfAbsent(row.get(QTeam.team.name), name -> new ArrayList<>()).add(row.get(QTeam.team.id));
+        }
+        loaded.replaceAll((name, ids) -> List.copyOf(ids));
+
+        // 읽는 동안 변경이 있었으면 세대가 달라서 다음 조회 때 다시 읽는다
+        snapshot = new Snapshot(Collections.unmodifiableMap(loaded), startGeneration, System.currentTimeMillis());
+        log.debug("Team dictionary loaded {} names", loaded.size());
+        return snapshot;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static class Snapshot {
+        private final Map<String, List<Long>> teamIds;
+        private final long generation;
+        private final long loadedAt;
+
+        private Snapshot(Map<String, List<Long>> teamIds, long generation, long loadedAt) {
+            this.teamIds = teamIds;
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberBinaryHttpMessageConverterTest {
+
+    MemberBinaryHttpMessageConverter converter = new MemberBinaryHttpMessageConverter();
+
+    @Test
+    void canWriteOnlyMemberTeamRows() {
+        assertTrue(converter.canWrite(new ParameterizedTypeReference<List<MemberTeamDto>>() {}.getType(),
+                List.class, MemberBinaryHttpMessageConverter.MEDIA_TYPE));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<List<MemberDto>>() {}.getType(),
+                List.class, MemberBinaryHttpMessageConverter.MEDIA_TYPE));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<List<MemberTeamDto>>() {}.getType(),
+                List.class, MediaType.APPLICATION_JSON));
+        // 요소 타입을 모르는 raw List
+        assertFalse(converter.canWrite(List.class, List.class, MemberBinaryHttpMessageConverter.MEDIA_TYPE));
+    }
+
+    @Test
+    void writePage() throws IOException {
+        List<MemberTeamDto> rows = List.of(
+                new MemberTeamDto(1L, "member1", 10, 100L, "teamA"),
+                new MemberTeamDto(2L, null, 20, null, null));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(new PageImpl<>(rows, PageRequest.of(3, 2), 42), null,
+                MemberBinaryHttpMessageConverter.MEDIA_TYPE, message);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBodyAsBytes()));
+        assertEquals(MemberBinaryHttpMessageConverter.VERSION, in.readByte());
+        assertEquals(MemberBinaryHttpMessageConverter.KIND_PAGE, in.readByte());
+        assertEquals(3, in.readInt());
+        assertEquals(2, in.readInt());
+        assertEquals(42, in.readLong());
+        assertEquals(2, in.readInt());
+
+        assertEquals(1L, in.readLong());
+        assertEquals("member1", readString(in));
+        assertEquals(10, in.readInt());
+        assertEquals(100L, in.readLong());
+        assertEquals("teamA", readString(in));
+
+        assertEquals(2L, in.readLong());
+        assertNull(readString(in));
+        assertEquals(20, in.readInt());
+        assertEquals(-1L, in.readLong());
+        assertNull(readString(in));
+        assertEquals(-1, in.read());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
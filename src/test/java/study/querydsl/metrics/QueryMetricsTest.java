@@ -0,0 +1,72 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class QueryMetricsTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    void recordsMethodAndFilters() {
+        Team team = new Team("metricsTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("metrics" + i, 10 + i, team));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("metricsTeam");
+        condition.setAgeGoe(12);
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+
+        Timer content = registry.find("querydsl.query")
+                .tags("method", "MemberRepositoryCustomImpl.searchPageComplex",
+                        "filters", "ageGoe,teamName",
+                        "kind", "fetch")
+                .timer();
+        assertNotNull(content);
+        assertTrue(content.count() >= 1);
+
+        // count 는 캐시를 거쳐 실행되지만 호출한 리포지토리 메서드로 기록된다
+        assertNotNull(registry.find("querydsl.query")
+                .tags("method", "MemberRepositoryCustomImpl.searchPageComplex", "kind", "fetchOne")
+                .timer());
+    }
+
+    @Test
+    void reusesMetersPerMethodFiltersAndKind() {
+        SimpleMeterRegistry simple = new SimpleMeterRegistry();
+        QueryMetrics metrics = new QueryMetrics(simple, 0, false);
+
+        metrics.record("fetch", "username", 1_000_000, 3, "select m from Member m", Map.of("member1", "1"));
+        metrics.record("fetch", "username", 2_000_000, 5, "select m from Member m", Map.of("member2", "1"));
+
+        assertEquals(1, simple.find("querydsl.query").timers().size());
+        assertEquals(2, simple.find("querydsl.query").timer().count());
+        assertEquals(2, simple.find("querydsl.query.slow").counter().count());
+        assertEquals(8, simple.find("querydsl.query.rows").summary().totalAmount());
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberImport;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberBulkLoaderTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberBulkLoader memberBulkLoader;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Test
+    void loadCsv() {
+        em.persist(new Team("bulkTeamA"));
+
+        String csv = "username,age,teamName\n" +
+                "bulk1,10,bulkTeamA\n" +
+                "bulk2,20,bulkTeamB\n" +
+                "bulk3,30,bulkTeamA\n" +
+                "bulk4,40,\n";
+
+        long loaded = memberBulkLoader.load(MemberImportReader.csv(new StringReader(csv)));
+        assertEquals(4, loaded);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+        List<MemberTeamDto> teamA = memberJpaRepository.search(condition);
+        assertEquals(2, teamA.size());
+
+        condition.setTeamName("bulkTeamB");
+        assertEquals(1, memberJpaRepository.search(condition).size());
+
+        assertEquals(40, memberJpaRepository.findByUsername("bulk4").get(0).getAge());
+    }
+
+    @Test
+    void csvSkipsOnlyHeaderLine() {
+        List<String> withHeader = MemberImportReader.csv(new StringReader(
+                "username,age,teamName\nusername1,10,\nusernameX,20,teamA\n"))
+                .map(MemberImport::getUsername)
+                .collect(Collectors.toList());
+        assertEquals(List.of("username1", "usernameX"), withHeader);
+
+        List<String> withoutHeader = MemberImportReader.csv(new StringReader("username2,10,\nother,20,\n"))
+                .map(MemberImport::getUsername)
+                .collect(Collectors.toList());
+        assertEquals(List.of("username2", "other"), withoutHeader);
+    }
+
+    @Test
+    void loadDoesNotRegisterSynchronizationPerRow() {
+        // batch-size(500) 를 몇 번 넘겨서 flush/clear 를 거치게 한다
+        String csv = IntStream.range(0, 1200)
+                .mapToObj(i -> "bulkSync" + i + "," + (i % 100) + ",")
+                .collect(Collectors.joining("\n"));
+        int before = TransactionSynchronizationManager.getSynchronizations().size();
+
+        assertEquals(1200, memberBulkLoader.load(MemberImportReader.csv(new StringReader(csv))));
+
+        // 행마다가 아니라 끝에 한 번 낸 이벤트의 리스너만 등록된다
+        int registered = TransactionSynchronizationManager.getSynchronizations().size() - before;
+        assertTrue(registered < 10, "synchronizations registered: " + registered);
+    }
+}
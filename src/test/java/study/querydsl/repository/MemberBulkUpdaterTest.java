@@ -0,0 +1,150 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberChangedEvent;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 쓰기 트랜잭션 밖에서는 chunk 마다 새 트랜잭션으로 커밋하기 때문에 테스트 데이터를 커밋해 두고 끝나면 지운다
+@SpringBootTest
+class MemberBulkUpdaterTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    TransactionTemplate tx;
+    MemberBulkUpdater memberBulkUpdater;
+    List<Object> events = new ArrayList<>();
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        memberBulkUpdater = new MemberBulkUpdater(queryFactory, emf, transactionManager, event -> {
+            events.add(event);
+            publisher.publishEvent(event);
+        }, 2);
+
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("bulkUpdateTeam");
+            em.persist(team);
+            // 대상 사이사이에 다른 회원을 끼워서 id 가 듬성듬성하게 만든다
+            for (int i = 0; i < 5; i++) {
+                Member member = new Member("bulkUpdate" + i, 10 * i, team);
+                em.persist(member);
+                memberIds.add(member.getId());
+                for (int j = 0; j < 3; j++) {
+                    em.persist(new Member("bulkUpdateOther", 10));
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(QMember.member)
+                    .where(QMember.member.username.startsWith("bulkUpdate"))
+                    .execute();
+            queryFactory.delete(QTeam.team)
+                    .where(QTeam.team.name.eq("bulkUpdateTeam"))
+                    .execute();
+        });
+    }
+
+    @Test
+    void bulkAgeIncrementAndDelete() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkUpdateTeam");
+
+        List<Long> progress = new ArrayList<>();
+        long updated = memberBulkUpdater.bulkAgeIncrement(condition, 1,
+                (affected, total, lastId, maxId) -> progress.add(total));
+
+        // 맞는 id 만 2개씩 나누므로 빈 chunk 없이 3번, 이벤트는 끝나고 한 번
+        assertEquals(5, updated);
+        assertEquals(List.of(2L, 4L, 5L), progress);
+        assertEquals(1, events.size());
+        assertNull(((MemberChangedEvent) events.get(0)).getMemberId());
+
+        assertEquals(1, age(memberIds.get(0)));
+        assertEquals(41, age(memberIds.get(4)));
+
+        condition.setAgeGoe(22);
+        long deleted = memberBulkUpdater.bulkDeleteByCondition(condition);
+
+        assertEquals(2, deleted);
+        assertNull(tx.execute(status -> em.find(Member.class, memberIds.get(3))));
+        assertNotNull(tx.execute(status -> em.find(Member.class, memberIds.get(2))));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void bulkUpdateDetachesCallerEntities() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkUpdateTeam");
+
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        readOnlyTx.executeWithoutResult(status -> {
+            Member loaded = em.find(Member.class, memberIds.get(0));
+
+            assertEquals(5, memberBulkUpdater.bulkAgeIncrement(condition));
+
+            // 부른 쪽이 읽어 둔 엔티티는 떼어지고, 다시 읽으면 바뀐 값이 보인다
+            assertFalse(em.contains(loaded));
+            assertEquals(1, em.find(Member.class, memberIds.get(0)).getAge());
+        });
+    }
+
+    @Test
+    void bulkUpdateJoinsCallerWriteTransaction() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkUpdateTeam");
+
+        tx.executeWithoutResult(status -> {
+            // 바깥 트랜잭션이 대상 행을 먼저 잠가도 같은 트랜잭션에서 돌므로 멈추지 않는다
+            Member loaded = em.find(Member.class, memberIds.get(0));
+            loaded.setUsername("bulkUpdateRenamed");
+            em.flush();
+
+            assertEquals(5, memberBulkUpdater.bulkAgeIncrement(condition));
+
+            assertFalse(em.contains(loaded));
+            Member reloaded = em.find(Member.class, memberIds.get(0));
+            assertEquals(1, reloaded.getAge());
+            assertEquals("bulkUpdateRenamed", reloaded.getUsername());
+        });
+        assertEquals(1, events.size());
+    }
+
+    private int age(Long memberId) {
+        return tx.execute(status -> em.find(Member.class, memberId).getAge());
+    }
+}
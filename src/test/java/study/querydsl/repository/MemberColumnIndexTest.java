@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 인덱스는 커밋 이후에 반영되므로 트랜잭션 테스트가 아니라 직접 커밋하고 지운다.
+ */
+@SpringBootTest(properties = "member.column-index.enabled=true")
+class MemberColumnIndexTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    MemberColumnIndex columnIndex;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'column%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'columnTeam%'").executeUpdate();
+        });
+    }
+
+    @Test
+    void searchMatchesDatabase() throws Exception {
+        Long memberId = tx.execute(status -> {
+            Team teamA = new Team("columnTeamA");
+            Team teamB = new Team("columnTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 20; i++) {
+                em.persist(new Member("column" + i, i * 5, i % 2 == 0 ? teamA : teamB));
+            }
+            Member noTeam = new Member("columnNoTeam", 50);
+            em.persist(noTeam);
+            return noTeam.getId();
+        });
+        awaitFresh();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("columnTeamA");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(70);
+        assertSameAsDatabase(condition);
+
+        condition = new MemberSearchCondition();
+        condition.setUsername("columnNoTeam");
+        assertSameAsDatabase(condition);
+
+        condition.setUsername("columnMissing");
+        assertEquals(0, columnIndex.search(condition).orElseThrow().size());
+
+        // 처음부터 다시 채워도 같은 결과
+        columnIndex.rebuild();
+        assertFalse(columnIndex.isFresh());
+        awaitFresh();
+        condition.setUsername("columnNoTeam");
+        assertSameAsDatabase(condition);
+
+        // 수정이 커밋되면 다시 반영된다
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId).setAge(99));
+        awaitFresh();
+        condition.setUsername("columnNoTeam");
+        assertEquals(99, columnIndex.search(condition).orElseThrow().get(0).getAge());
+    }
+
+    private void assertSameAsDatabase(MemberSearchCondition condition) {
+        List<MemberTeamDto> fromIndex = columnIndex.search(condition).orElseThrow();
+        List<MemberTeamDto> fromDb = memberJpaRepository.search(condition);
+        assertFalse(fromDb.isEmpty());
+        assertEquals(sorted(fromDb), sorted(fromIndex));
+    }
+
+    private static List<MemberTeamDto> sorted(List<MemberTeamDto> members) {
+        return members.stream()
+                .sorted(Comparator.comparing(MemberTeamDto::getMemberId))
+                .collect(Collectors.toList());
+    }
+
+    private void awaitFresh() throws InterruptedException {
+        for (int i = 0; i < 100 && !columnIndex.isFresh(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(columnIndex.isFresh());
+    }
+}
@@ -10,11 +10,16 @@ import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.support.QueryBudget;
+import study.querydsl.support.QueryCounter;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +31,10 @@ class MemberJpaRepositoryTest {
     EntityManager em;
     @Autowired
     MemberJpaRepository memberJpaRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    TeamDictionary teamDictionary;
 
     @Test
     void basicTest() {
@@ -114,4 +123,136 @@ class MemberJpaRepositoryTest {
         assertEquals("member4", memberTeamDtos.get(0).getUsername());
     }
 
-}
\ No newline at end of file
+    @Test
+    void searchStreamTest() {
+        Team teamA = new Team("streamTeam");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("stream" + i, i, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("streamTeam");
+        condition.setAgeGoe(5);
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        long count = memberJpaRepository.searchStream(condition, result::add);
+
+        assertEquals(5, count);
+        assertEquals(5, result.size());
+        assertEquals("streamTeam", result.get(0).getTeamName());
+    }
+
+
+    @Test
+    void findAllWithTeamNoNPlusOneTest() {
+        Team teamA = new Team("batchTeamA");
+        Team teamB = new Team("batchTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("batch" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+        em.clear();
+
+        // member 1번 + team 은 IN 으로 한번에. 다른 테스트 데이터의 팀 수와 상관없도록 이 테스트의 회원만 읽는다
+        List<String> teamNames = QueryBudget.assertAtMost(2, () -> {
+            List<String> names = new ArrayList<>();
+            List<Member> members = queryFactory
+                    .selectFrom(QMember.member)
+                    .where(QMember.member.username.startsWith("batch"))
+                    .fetch();
+            for (Member member : members) {
+                if (member.getTeam() != null) {
+                    names.add(member.getTeam().getName());
+                }
+            }
+            return names;
+        });
+        assertTrue(teamNames.contains("batchTeamA"));
+        assertEquals(10, teamNames.size());
+        assertTrue(teamNames.contains("batchTeamB"));
+
+        em.clear();
+
+        // team 1번 + members 컬렉션도 IN 으로 한번에
+        int memberCount = QueryBudget.assertAtMost(2, () -> em
+                .createQuery("select t from Team t where t.name like 'batchTeam%'", Team.class)
+                .getResultList().stream()
+                .mapToInt(team -> team.getMembers().size())
+                .sum());
+        assertEquals(10, memberCount);
+    }
+
+    @Test
+    void findAllByIdsTest() {
+        Team team = new Team("multiGetTeam");
+        em.persist(team);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Member member = new Member("multiGet" + i, i, team);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+
+        // 하나는 미리 영속성 컨텍스트에 올려 둔다
+        Member loaded = em.find(Member.class, ids.get(0));
+        List<Long> lookup = new ArrayList<>(ids);
+        lookup.add(-1L);
+
+        Map<Long, Member> found = QueryBudget.assertAtMost(1, () -> memberJpaRepository.findAllByIds(lookup));
+        assertEquals(5, found.size());
+        assertSame(loaded, found.get(ids.get(0)));
+        assertFalse(found.containsKey(-1L));
+
+        // 전부 영속성 컨텍스트에 있으면 쿼리가 나가지 않는다
+        QueryBudget.assertAtMost(0, () -> memberJpaRepository.findAllByIds(ids));
+    }
+
+    @Test
+    void findByUsernamesTest() {
+        em.persist(new Member("multiName1", 10));
+        em.persist(new Member("multiName1", 20));
+        em.persist(new Member("multiName2", 30));
+        em.flush();
+        em.clear();
+
+        Map<String, List<Member>> found = QueryBudget.assertAtMost(1,
+                () -> memberJpaRepository.findByUsernames(List.of("multiName1", "multiName2", "multiName3")));
+        assertEquals(2, found.get("multiName1").size());
+        assertEquals(1, found.get("multiName2").size());
+        assertFalse(found.containsKey("multiName3"));
+    }
+
+    @Test
+    void inChunksArePaddedWithinChunkSize() {
+        // 6 은 4 로 내림된다. 7개면 4 + 3(4로 채움)
+        MemberJpaRepository repository = new MemberJpaRepository(em, queryFactory, teamDictionary, 1000, 6);
+        List<String> usernames = List.of("chunk1", "chunk2", "chunk3", "chunk4", "chunk5", "chunk6", "chunk7");
+        em.persist(new Member("chunk7", 10));
+        em.flush();
+        em.clear();
+
+        QueryCounter.start();
+        Map<String, List<Member>> found = repository.findByUsernames(usernames);
+        List<String> statements = QueryCounter.stop();
+
+        assertEquals(1, found.get("chunk7").size());
+        assertEquals(2, statements.size());
+        for (String sql : statements) {
+            // 앞의 JPQL 주석(?1)은 빼고 SQL 의 IN 절만 센다
+            String in = sql.substring(sql.lastIndexOf(" in ("));
+            assertEquals(4, in.chars().filter(c -> c == '?').count(), sql);
+        }
+        assertEquals(List.of(List.of(1, 2, 3, 4), List.of(5, 6, 7, 7)),
+                repository.paddedChunks(List.of(1, 2, 3, 4, 5, 6, 7)));
+        assertEquals(List.of(List.of(1, 2, 3, 4), List.of(5)),
+                repository.paddedChunks(List.of(1, 2, 3, 4, 5)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new MemberJpaRepository(em, queryFactory, teamDictionary, 1000, 0));
+    }
+}
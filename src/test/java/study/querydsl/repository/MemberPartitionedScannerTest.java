@@ -0,0 +1,157 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 범위마다 따로 트랜잭션을 쓰기 때문에 테스트 데이터를 커밋해 두고 끝나면 지운다
+@SpringBootTest
+class MemberPartitionedScannerTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    MemberPartitionedScanner scanner;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    QueryMetrics queryMetrics;
+    @Autowired
+    TeamDictionary teamDictionary;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("scanTeam");
+            em.persist(team);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("scan" + i, i, team));
+            }
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    void scanAllPartitions() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("scanTeam");
+        condition.setAgeGoe(3);
+
+        Set<String> usernames = new HashSet<>();
+        long count = scanner.scan(condition, 3, dto -> usernames.add(dto.getUsername()));
+
+        assertEquals(7, count);
+        assertEquals(7, usernames.size());
+        assertTrue(usernames.containsAll(List.of("scan3", "scan9")));
+    }
+
+    @Test
+    void consumerFailureStopsPartitions() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("scanTeam");
+
+        // consumer 가 실패하면 나머지 범위도 멈추고 scan 이 그 예외로 끝난다
+        AtomicInteger seen = new AtomicInteger();
+        assertThrows(UncheckedIOException.class, () -> scanner.scan(condition, 4, (MemberTeamDto dto) -> {
+            if (seen.incrementAndGet() == 2) {
+                throw new UncheckedIOException(new IOException("client gone"));
+            }
+        }));
+        assertEquals(2, seen.get());
+
+        // 멈춘 뒤에도 다음 scan 은 정상으로 돈다
+        assertEquals(10, scanner.scan(condition, dto -> { }));
+    }
+
+    @Test
+    void rejectsScansBeyondMaxScans() throws Exception {
+        MemberPartitionedScanner bounded = new MemberPartitionedScanner(emf, queryFactory, queryMetrics, teamDictionary,
+                2, 1, 4, 1, 1000);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("scanTeam");
+        try {
+            // 소비가 멈춘 scan 이 자리를 잡고 있으면 다음 scan 은 기다리지 않고 바로 거절된다
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Long> stalled = CompletableFuture.supplyAsync(() -> bounded.scan(condition, dto -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertThrows(RejectedExecutionException.class, () -> bounded.scan(condition, dto -> { }));
+
+            release.countDown();
+            assertEquals(10, (long) stalled.get(5, TimeUnit.SECONDS));
+            assertEquals(10, bounded.scan(condition, dto -> { }));
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    @Test
+    void partitionsReadInReadOnlyTransaction() {
+        EntityManager readOnly = ReadOnlyTransactions.begin(emf);
+        Session session = readOnly.unwrap(Session.class);
+        assertTrue(readOnly.getTransaction().isActive());
+        assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+        assertTrue(session.isDefaultReadOnly());
+
+        // 읽은 엔티티를 고쳐도 flush 되지 않는다
+        Member member = readOnly.find(Member.class, tx.execute(status -> scanMemberId()));
+        member.setAge(99);
+        ReadOnlyTransactions.end(readOnly);
+        assertFalse(readOnly.isOpen());
+        assertEquals(0, (int) tx.execute(status -> em.find(Member.class, member.getId()).getAge()));
+    }
+
+    private Long scanMemberId() {
+        return em.createQuery("select m.id from Member m where m.username = 'scan0'", Long.class).getSingleResult();
+    }
+}
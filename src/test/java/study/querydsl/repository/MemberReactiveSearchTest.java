@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 커서가 자기 EntityManager 로 읽기 때문에 테스트 데이터를 커밋해 두고 끝나면 지운다
+@SpringBootTest
+class MemberReactiveSearchTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    MemberReactiveSearch reactiveSearch;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("reactiveTeam");
+            em.persist(team);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("reactive" + i, 10 * i, team));
+            }
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    void searchStreamsRows() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("reactiveTeam");
+        condition.setAgeGoe(20);
+
+        List<MemberTeamDto> rows = reactiveSearch.search(condition).collectList().block();
+
+        assertEquals(3, rows.size());
+        assertTrue(rows.stream().allMatch(dto -> "reactiveTeam".equals(dto.getTeamName())));
+    }
+
+    @Test
+    void cancelledStreamsReleaseCursor() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("reactiveTeam");
+
+        // 중간에 끊어도 커서가 닫히니 max-streams 보다 많이 열 수 있다
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, reactiveSearch.search(condition).take(2).collectList().block().size());
+        }
+        assertEquals(5, reactiveSearch.search(condition).count().block());
+    }
+
+    @Test
+    void searchPage() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("reactiveTeam");
+
+        Page<MemberTeamDto> page = reactiveSearch.searchPageComplex(condition, PageRequest.of(1, 2)).block();
+
+        assertEquals(5, page.getTotalElements());
+        assertEquals(2, page.getContent().size());
+
+        condition.setTeamName("noSuchTeam");
+        assertEquals(0, reactiveSearch.search(condition).count().block());
+    }
+}
@@ -5,14 +5,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.QueryCounter;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +32,12 @@ class MemberRepositoryTest {
     EntityManager em;
     @Autowired
     MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    MemberSearchTemplates searchTemplates;
+    @Autowired
+    MemberCountCache countCache;
 
     @Test
     void basicTest() {
@@ -95,4 +109,185 @@ class MemberRepositoryTest {
         assertEquals(3, result.getSize());
         assertEquals("member1", result.getContent().get(0).getUsername());
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchByCursorTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("cursor" + i, 50 - (i % 3), teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        List<MemberTeamDto> all = new ArrayList<>();
+        MemberCursorPage page = memberRepository.searchByCursor(condition, null, "age", 4);
+        all.addAll(page.getContent());
+        while (page.isHasNext()) {
+            page = memberRepository.searchByCursor(condition, page.getNextCursor(), null, 4);
+            all.addAll(page.getContent());
+        }
+
+        assertEquals(10, all.size());
+        assertEquals(10, all.stream().map(MemberTeamDto::getMemberId).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getAge() <= all.get(i).getAge());
+        }
+
+        // 잘못된 커서나 정렬 키는 전용 예외로 올라와서 컨트롤러가 400 으로 돌려준다
+        assertThrows(InvalidMemberRequestException.class,
+                () -> memberRepository.searchByCursor(condition, "not-a-cursor", null, 4));
+        assertThrows(InvalidMemberRequestException.class,
+                () -> memberRepository.searchByCursor(condition, null, "teamName", 4));
+    }
+
+    @Test
+    void searchPageCountCacheTest() {
+        Team team = new Team("countTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("count" + i, i, team));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("countTeam");
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        assertEquals(5, memberRepository.searchPageSimple(condition, pageRequest).getTotalElements());
+
+        // 회원이 추가되면 캐시된 count 는 무효화된다
+        em.persist(new Member("count5", 5, team));
+        assertEquals(6, memberRepository.searchPageComplex(condition, pageRequest).getTotalElements());
+
+        Page<MemberTeamDto> estimated = memberRepository.searchPageEstimated(condition, pageRequest);
+        assertEquals(6, estimated.getTotalElements());
+
+        // 캐시에 없으면 세지 않는다. 조건이 있으면 꽉 찬 페이지 다음에 한 건 더 있다고만 알린다
+        countCache.invalidateAll();
+        QueryCounter.start();
+        Page<MemberTeamDto> guessed = memberRepository.searchPageEstimated(condition, pageRequest);
+        Page<MemberTeamDto> last = memberRepository.searchPageEstimated(condition, PageRequest.of(1, 4));
+        Page<MemberTeamDto> unfiltered = memberRepository.searchPageEstimated(new MemberSearchCondition(), pageRequest);
+        List<String> statements = QueryCounter.stop();
+        assertTrue(statements.stream().noneMatch(sql -> sql.toLowerCase().contains("count(")), statements::toString);
+
+        assertEquals(3, guessed.getTotalElements());
+        assertTrue(guessed.hasNext());
+        // 마지막 페이지면 정확한 total
+        assertEquals(6, last.getTotalElements());
+        assertFalse(last.hasNext());
+        // 조건이 없으면 테이블 행 수 추정치, 통계가 모자라도 꽉 찬 페이지면 다음 페이지가 있다
+        assertTrue(unfiltered.hasNext());
+        assertTrue(unfiltered.getTotalElements() > pageRequest.getPageSize());
+
+        // team 조건이 없으면 조인 없이 센다
+        Page<MemberTeamDto> all = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 1));
+        assertEquals(memberRepository.count(), all.getTotalElements());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void searchPageAsyncTest() {
+        // 비동기 검색은 별도 트랜잭션에서 돌기 때문에 데이터를 커밋해 둔다
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("asyncTeam");
+            em.persist(team);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("async" + i, i, team));
+            }
+            return team.getId();
+        });
+
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("asyncTeam");
+
+            Page<MemberTeamDto> page = memberRepository.searchPageAsync(condition, PageRequest.of(1, 2)).join();
+            assertEquals(5, page.getTotalElements());
+            assertEquals(2, page.getContent().size());
+            assertEquals("async2", page.getContent().get(0).getUsername());
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+                em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            });
+        }
+    }
+
+    @Test
+    void searchTemplateCacheTest() {
+        Team teamA = new Team("templateTeam");
+        em.persist(teamA);
+        em.persist(new Member("template1", 20, teamA));
+        em.persist(new Member("template2", 30, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("templateTeam");
+        condition.setAgeGoe(25);
+        memberRepository.search(condition);
+
+        long hits = searchTemplates.hitCount();
+        long misses = searchTemplates.missCount();
+
+        // 같은 조합이면 값이 달라도 만들어 둔 쿼리를 다시 쓴다
+        condition.setAgeGoe(10);
+        List<MemberTeamDto> result = memberRepository.search(condition);
+
+        assertEquals(2, result.size());
+        assertEquals(hits + 1, searchTemplates.hitCount());
+        assertEquals(misses, searchTemplates.missCount());
+    }
+
+    @Test
+    void searchSliceTest() {
+        Team team = new Team("sliceTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("slice" + i, i, team));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("sliceTeam");
+
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 2));
+        assertEquals(2, first.getContent().size());
+        assertTrue(first.hasNext());
+
+        Slice<MemberTeamDto> last = memberRepository.searchSlice(condition, PageRequest.of(2, 2));
+        assertEquals(1, last.getContent().size());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    void searchPageSortTest() {
+        Team team = new Team("sortTeam");
+        em.persist(team);
+        em.persist(new Member("sort1", 30, team));
+        em.persist(new Member("sort2", 10, team));
+        em.persist(new Member("sort3", 30, team));
+        em.persist(new Member("sort4", 20, team));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("sortTeam");
+
+        // 나이가 같으면 member.id 도 같은 방향(desc)
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "age")));
+        List<String> usernames = page.getContent().stream()
+                .map(MemberTeamDto::getUsername)
+                .collect(Collectors.toList());
+        assertEquals(List.of("sort3", "sort1", "sort4", "sort2"), usernames);
+        assertEquals(4, memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "age", "id"))).getNumberOfElements());
+
+        // 인덱스가 없는 컬럼, 모르는 프로퍼티, 여러 컬럼, 방향이 섞인 id 는 거부한다 (리포지토리 프록시를 거쳐도 그대로 올라온다)
+        assertThrows(InvalidMemberRequestException.class,
+                () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10, Sort.by("teamName"))));
+        assertThrows(InvalidMemberRequestException.class,
+                () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10, Sort.by("username", "age"))));
+        assertThrows(InvalidMemberRequestException.class,
+                () -> memberRepository.searchPageComplex(condition,
+                        PageRequest.of(0, 10, Sort.by(Sort.Order.desc("age"), Sort.Order.asc("id")))));
+    }
+}
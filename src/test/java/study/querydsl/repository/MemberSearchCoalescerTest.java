@@ -0,0 +1,92 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberSearchCoalescerTest {
+
+    @Test
+    void concurrentIdenticalSearchesRunOnce() throws Exception {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(null, new SimpleMeterRegistry(), 0);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        List<Object> key = List.of("search", 1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> coalescer.coalesce(key, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return new Object();
+                }), pool));
+            }
+
+            // 먼저 온 하나가 실행 중인 동안 나머지 7개가 붙을 때까지 기다린다
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (coalescer.coalescedCount() < 7 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            Object first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (CompletableFuture<Object> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+            assertEquals(1, coalescer.executedCount());
+            assertEquals(7, coalescer.coalescedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 끝난 뒤에는(ttl 0) 다시 실행한다
+        coalescer.coalesce(key, Object::new);
+        assertEquals(2, coalescer.executedCount());
+    }
+
+    @Test
+    void ttlKeepsResultUntilChange() {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(null, new SimpleMeterRegistry(), 60_000);
+        List<Object> key = List.of("search", 2);
+
+        Object first = coalescer.coalesce(key, Object::new);
+        assertSame(first, coalescer.coalesce(key, Object::new));
+        assertEquals(1, coalescer.cachedCount());
+
+        coalescer.onChange();
+        assertNotSame(first, coalescer.coalesce(key, Object::new));
+        assertEquals(2, coalescer.executedCount());
+    }
+
+    @Test
+    void failureIsSharedButNotKept() {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(null, new SimpleMeterRegistry(), 60_000);
+        List<Object> key = List.of("search", 3);
+
+        assertThrows(IllegalStateException.class, () -> coalescer.coalesce(key, () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals("ok", coalescer.coalesce(key, () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
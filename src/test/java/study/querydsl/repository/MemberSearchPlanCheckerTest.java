@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "member.search.plan-check.enabled=true")
+class MemberSearchPlanCheckerTest {
+
+    @Autowired
+    MemberSearchPlanChecker planChecker;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username = 'planMember'").executeUpdate();
+            em.createQuery("delete from Team t where t.name = 'planTeam'").executeUpdate();
+        });
+    }
+
+    @Test
+    void memberPredicatesUseIndex() throws Exception {
+        // 팀이 있어야 팀 사전을 거친 team_id 조건도 본다
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("planTeam");
+            em.persist(team);
+            em.persist(new Member("planMember", 20, team));
+        });
+
+        QueryCounter.start();
+        Map<String, String> scans = planChecker.check();
+        List<String> statements = QueryCounter.stop();
+
+        assertTrue(scans.isEmpty(), () -> "full scans: " + scans);
+        // 팀 사전을 거친 team_id 조건과 쓰기 트랜잭션의 서브쿼리 조건을 둘 다 EXPLAIN 한다
+        assertTrue(statements.stream().anyMatch(sql -> sql.contains("member0_.team_id=?")), () -> String.join("\n", statements));
+        assertTrue(statements.stream().anyMatch(sql -> sql.contains("team_id in (select")), () -> String.join("\n", statements));
+    }
+}
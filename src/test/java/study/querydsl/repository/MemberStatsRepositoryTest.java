@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.AgeBucketStatsDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberStatsRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberStatsRepository memberStatsRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    TeamDictionary teamDictionary;
+
+    @Test
+    void teamAndAgeBucketStats() {
+        Team team = new Team("statsTeam");
+        em.persist(team);
+        em.persist(new Member("stats1", 10, team));
+        em.persist(new Member("stats2", 15, team));
+        em.persist(new Member("stats3", 27, team));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("statsTeam");
+
+        MemberStatsDto stats = memberStatsRepository.stats(condition, 10);
+
+        List<TeamStatsDto> teams = stats.getTeams();
+        assertEquals(1, teams.size());
+        assertEquals("statsTeam", teams.get(0).getTeamName());
+        assertEquals(3, teams.get(0).getCount());
+        assertEquals(52, teams.get(0).getAgeSum());
+        assertEquals(10, teams.get(0).getAgeMin());
+        assertEquals(27, teams.get(0).getAgeMax());
+
+        List<AgeBucketStatsDto> buckets = stats.getAgeBuckets();
+        assertEquals(2, buckets.size());
+        assertEquals(10, buckets.get(0).getAgeFrom());
+        assertEquals(20, buckets.get(0).getAgeTo());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals(12.5, buckets.get(0).getAgeAvg(), 0.001);
+        assertEquals(20, buckets.get(1).getAgeFrom());
+
+        // 변경이 없으면 들고 있는 결과를 그대로, 회원이 추가되면 다시 계산한다
+        assertSame(stats, memberStatsRepository.stats(condition, 10));
+        em.persist(new Member("stats4", 40, team));
+        em.flush();
+        assertEquals(4, memberStatsRepository.stats(condition, 10).getTeams().get(0).getCount());
+    }
+
+    @Test
+    void materializedResultsAreBoundedBySizeAndTtl() throws InterruptedException {
+        MemberSearchCondition first = new MemberSearchCondition();
+        first.setAgeGoe(10);
+        MemberSearchCondition second = new MemberSearchCondition();
+        second.setAgeGoe(20);
+
+        // 가장 오래 안 쓴 조건부터 버린다
+        MemberStatsRepository lru = new MemberStatsRepository(queryFactory, teamDictionary, true, 60_000, 1);
+        MemberStatsDto stats = lru.stats(first, 10);
+        assertSame(stats, lru.stats(first, 10));
+        lru.stats(second, 10);
+        assertNotSame(stats, lru.stats(first, 10));
+
+        MemberStatsRepository ttl = new MemberStatsRepository(queryFactory, teamDictionary, true, 1, 1000);
+        stats = ttl.stats(first, 10);
+        Thread.sleep(10);
+        assertNotSame(stats, ttl.stats(first, 10));
+    }
+}
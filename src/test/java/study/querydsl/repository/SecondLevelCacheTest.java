@@ -0,0 +1,126 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 2차 캐시는 커밋된 데이터만 담으므로 트랜잭션을 직접 커밋하고, 끝나면 지운다.
+ */
+@SpringBootTest(properties = "member.second-level-cache.enabled=true")
+class SecondLevelCacheTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    Statistics statistics;
+    Long teamAId;
+    Long teamBId;
+    Long memberId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("cacheTeamA");
+            Team teamB = new Team("cacheTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member = new Member("cacheMember", 10, teamA);
+            em.persist(member);
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            memberId = member.getId();
+        });
+        emf.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(QMember.member).where(QMember.member.username.eq("cacheMember")).execute();
+            em.createQuery("delete from Team t where t.id in (:ids)")
+                    .setParameter("ids", List.of(teamAId, teamBId))
+                    .executeUpdate();
+        });
+    }
+
+    @Test
+    void findByIdHitsCache() {
+        tx.executeWithoutResult(status -> memberRepository.findById(memberId));
+        tx.executeWithoutResult(status -> memberRepository.findById(memberId));
+
+        assertEquals(1, statistics.getSecondLevelCacheMissCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 1);
+    }
+
+    @Test
+    void findByUsernameUsesQueryCache() {
+        tx.executeWithoutResult(status -> memberRepository.findByUsername("cacheMember"));
+        tx.executeWithoutResult(status -> memberRepository.findByUsername("cacheMember"));
+        tx.executeWithoutResult(status -> memberJpaRepository.findByUsername_Querydsl("cacheMember"));
+        tx.executeWithoutResult(status -> memberJpaRepository.findByUsername_Querydsl("cacheMember"));
+
+        assertEquals(2, statistics.getQueryCacheMissCount());
+        assertEquals(2, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void changeTeamEvictsStaleState() {
+        tx.executeWithoutResult(status -> em.find(Team.class, teamAId).getMembers().size());
+
+        tx.executeWithoutResult(status -> {
+            Member member = em.find(Member.class, memberId);
+            member.changeTeam(em.find(Team.class, teamBId));
+        });
+
+        tx.executeWithoutResult(status -> {
+            assertEquals(teamBId, em.find(Member.class, memberId).getTeam().getId());
+            assertEquals(0, em.find(Team.class, teamAId).getMembers().size());
+            assertEquals(1, em.find(Team.class, teamBId).getMembers().size());
+        });
+    }
+
+    @Test
+    void bulkUpdateEvictsCache() {
+        tx.executeWithoutResult(status -> memberRepository.findById(memberId));
+        tx.executeWithoutResult(status -> memberRepository.findByUsername("cacheMember"));
+
+        tx.executeWithoutResult(status -> queryFactory
+                .update(QMember.member)
+                .set(QMember.member.age, QMember.member.age.add(1))
+                .where(QMember.member.id.eq(memberId))
+                .execute());
+
+        tx.executeWithoutResult(status -> {
+            assertEquals(11, memberRepository.findById(memberId).get().getAge());
+            assertEquals(11, memberRepository.findByUsername("cacheMember").get(0).getAge());
+        });
+    }
+}
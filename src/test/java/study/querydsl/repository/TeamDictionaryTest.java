@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.QueryBudget;
+import study.querydsl.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 사전은 쓰기 트랜잭션 밖에서만 쓰이므로 데이터를 커밋해 두고 트랜잭션 없이 검색한다
+@SpringBootTest
+class TeamDictionaryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TeamDictionary teamDictionary;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    TransactionTemplate tx;
+    Long teamId;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            Team team = new Team("dictTeam");
+            em.persist(team);
+            for (int i = 0; i < 3; i++) {
+                em.persist(new Member("dict" + i, 20 + i, team));
+            }
+            return team.getId();
+        });
+    }
+
+    @AfterEach
+    void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    void teamNameIsRewrittenToTeamId() {
+        assertEquals(List.of(teamId), teamDictionary.teamIds("dictTeam").orElseThrow());
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictTeam");
+
+        QueryCounter.start();
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+        List<String> statements = QueryCounter.stop();
+
+        assertEquals(3, page.getTotalElements());
+        assertEquals("dictTeam", page.getContent().get(0).getTeamName());
+        // team.name 이 아니라 member.team_id 로 거른다
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("name=?")), () -> String.join("\n", statements));
+        assertEquals(3, memberRepository.search(condition).size());
+        assertEquals(3, memberJpaRepository.search(condition).size());
+    }
+
+    @Test
+    void unknownTeamNameSkipsQuery() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("noSuchTeam");
+        teamDictionary.teamIds("noSuchTeam");
+
+        Page<MemberTeamDto> page = QueryBudget.assertAtMost(0,
+                () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)));
+        assertEquals(0, page.getTotalElements());
+        assertTrue(QueryBudget.assertAtMost(0, () -> memberJpaRepository.search(condition)).isEmpty());
+        assertTrue(QueryBudget.assertAtMost(0, () -> memberRepository.search(condition)).isEmpty());
+    }
+
+    @Test
+    void reloadedAfterTeamChange() {
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId).setName("dictTeamRenamed"));
+
+        assertTrue(teamDictionary.isUnknown("dictTeam"));
+        assertEquals(List.of(teamId), teamDictionary.teamIds("dictTeamRenamed").orElseThrow());
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictTeamRenamed");
+        assertEquals(3, memberJpaRepository.search(condition).size());
+    }
+
+    @Test
+    void unknownNameReloadsBeforeShortCircuit() {
+        TeamDictionary dictionary = new TeamDictionary(queryFactory, true, 60_000, 0);
+        assertEquals(List.of(teamId), dictionary.teamIds("dictTeam").orElseThrow());
+
+        // 벌크 update 는 엔티티 콜백을 타지 않아서 세대가 오르지 않는다 (다른 인스턴스가 바꾼 것과 같다)
+        tx.executeWithoutResult(status -> em.createQuery("update Team t set t.name = 'dictTeamBulk' where t.id = :teamId")
+                .setParameter("teamId", teamId)
+                .executeUpdate());
+
+        assertFalse(dictionary.isUnknown("dictTeamBulk"));
+        assertEquals(List.of(teamId), dictionary.teamIds("dictTeamBulk").orElseThrow());
+    }
+
+    @Test
+    void writeTransactionFallsBackToJoin() {
+        // 쓰기 트랜잭션 안에서 만든 팀은 flush 전이라 사전이 모를 수 있으니 조인 조건으로 찾는다
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("dictTeamInTx");
+            em.persist(team);
+            em.persist(new Member("dictInTx", 30, team));
+
+            assertFalse(teamDictionary.teamIds("dictTeamInTx").isPresent());
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("dictTeamInTx");
+            assertEquals(1, memberJpaRepository.search(condition).size());
+            status.setRollbackOnly();
+        });
+    }
+}
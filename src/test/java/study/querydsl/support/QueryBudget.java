@@ -0,0 +1,32 @@
+package study.querydsl.support;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 블록 안에서 실행된 SQL 수가 예산을 넘으면 테스트를 실패시킨다. (N+1 검출용)
+ * 지연 로딩까지 세려면 엔티티를 건드리는 코드도 블록 안에 넣어야 한다.
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static <T> T assertAtMost(int maxStatements, Supplier<T> block) {
+        QueryCounter.start();
+        T result;
+        List<String> statements;
+        try {
+            result = block.get();
+        } finally {
+            statements = QueryCounter.stop();
+        }
+        if (statements.size() > maxStatements) {
+            fail("Expected at most " + maxStatements + " statements but " + statements.size() + " were executed:\n"
+                    + String.join("\n", statements));
+        }
+        return result;
+    }
+}